@@ -0,0 +1,198 @@
+package project2;
+
+import java.sql.Connection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+
+/*
+    The AsyncFakebookOracle class runs FakebookOracle queries without blocking the caller: submit
+    returns a CompletableFuture that completes with whatever the query method returns. Each query
+    runs on the caller's ExecutorService, on a connection borrowed from <dataSource> for that
+    query alone, through a StudentFakebookOracle built on one FakebookOracleState shared by all
+    queries. Observed fetch sizes and the tables loaded by the in-memory engines therefore
+    survive from one query to the next; prepared statements do through the statement cache of
+    the pool or the driver (see FakebookOracleState).
+
+    A query with a deadline (FakebookOracleConfig.setQueryTimeout) is bounded twice: every one of
+    its statements, the loads of the in-memory engines included, carries the deadline as its JDBC
+    query timeout, so the database gives up on its own, and once the deadline passes the future
+    completes with a TimeoutException and the statement in flight is cancelled
+    (StudentFakebookOracle.cancel). Cancelling the future does the same. Either way the query
+    thread stops at its current statement, or a load at its next fetch batch, and returns the
+    connection to the pool; only the client-side computation an in-memory engine runs after its
+    load is not interrupted. A query still waiting for a thread when it is cancelled or times out
+    never runs.
+
+    Errors otherwise behave as with StudentFakebookOracle: a query whose SQL fails completes with
+    the query's sentinel answer, not exceptionally. Completions, timeouts and cancellations are
+    counted per query.
+*/
+public final class AsyncFakebookOracle {
+    // [Constructor]
+    // REQUIRES: <executor> has at least as many threads as queries should run at once, and the
+    //           pool behind <dataSource> can hand out that many connections
+    public AsyncFakebookOracle(DataSource dataSource, ExecutorService executor) {
+        this(dataSource, executor, FakebookOracleConfig.fromSystemProperties());
+    }
+
+    // [Constructor]
+    // EFFECTS: evaluates each query with the engine and deadline selected for it in <config>
+    public AsyncFakebookOracle(DataSource dataSource, ExecutorService executor, FakebookOracleConfig config) {
+        this(dataSource, executor, new FakebookOracleState(config));
+    }
+
+    // [Constructor]
+    // REQUIRES: <state> belongs to the database behind <dataSource>
+    // EFFECTS: evaluates each query with the engine and deadline configured by <state>, on
+    //          oracles sharing <state>
+    public AsyncFakebookOracle(DataSource dataSource, ExecutorService executor, FakebookOracleState state) {
+        this.dataSource = dataSource;
+        this.executor = executor;
+        this.state = state;
+        this.config = state.config();
+        for (QueryId query : QueryId.values()) {
+            completions.put(query, new LongAdder());
+            timeouts.put(query, new LongAdder());
+            cancellations.put(query, new LongAdder());
+        }
+    }
+
+    // EFFECTS: starts <call> and returns its future answer. The future completes exceptionally
+    //          with a TimeoutException if the query's deadline passes first, and with the
+    //          executor's RejectedExecutionException if the executor refuses the query.
+    public CompletableFuture<Object> submit(QueryCall call) {
+        QueryId query = call.query();
+        Running running = new Running();
+        CompletableFuture<Object> answer = new CompletableFuture<Object>();
+        answer.whenComplete((result, failure) -> {
+            if (failure instanceof TimeoutException) {
+                timeouts.get(query).increment();
+                running.cancel();
+            }
+            else if (failure instanceof CancellationException) {
+                cancellations.get(query).increment();
+                running.cancel();
+            }
+            else if (failure == null) {
+                completions.get(query).increment();
+            }
+        });
+
+        try {
+            executor.execute(() -> run(call, running, answer));
+        }
+        catch (RejectedExecutionException e) {
+            answer.completeExceptionally(e);
+            return answer;
+        }
+        long timeoutMillis = config.queryTimeoutMillis(query);
+        if (timeoutMillis > 0) {
+            answer.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return answer;
+    }
+
+    // The state shared by the oracles the submitted queries run on
+    public FakebookOracleState state() {
+        return state;
+    }
+
+    // The number of calls of <query> that completed with an answer
+    public long completions(QueryId query) {
+        return completions.get(query).sum();
+    }
+
+    // The number of calls of <query> whose deadline passed before they completed
+    public long timeouts(QueryId query) {
+        return timeouts.get(query).sum();
+    }
+
+    // The number of calls of <query> cancelled by their caller
+    public long cancellations(QueryId query) {
+        return cancellations.get(query).sum();
+    }
+
+    // The number of calls of any query whose deadline passed before they completed
+    public long timeouts() {
+        long total = 0;
+        for (LongAdder count : timeouts.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    // EFFECTS: evaluates <call> on a borrowed connection unless <answer> already timed out or was
+    //          cancelled, and completes <answer> with the result
+    private void run(QueryCall call, Running running, CompletableFuture<Object> answer) {
+        if (answer.isDone()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection();
+             StudentFakebookOracle oracle = new StudentFakebookOracle(connection, state)) {
+            if (!running.start(oracle)) {
+                return;
+            }
+            try {
+                answer.complete(call.invoke(oracle));
+            }
+            finally {
+                running.finish();
+            }
+        }
+        catch (Throwable e) {
+            answer.completeExceptionally(e);
+        }
+    }
+
+    // The oracle a submitted call is running on, if it has started, so that a timeout or a
+    // cancellation arriving on another thread can interrupt it
+    private static final class Running {
+        // MODIFIES: this
+        // EFFECTS: records that the call runs on <oracle>; returns false if it was cancelled
+        //          already and must not run
+        synchronized boolean start(StudentFakebookOracle oracle) {
+            if (cancelled) {
+                return false;
+            }
+            this.oracle = oracle;
+            return true;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: records that the call returned, so that its statements, which are about to be
+        //          closed, are no longer cancelled
+        synchronized void finish() {
+            oracle = null;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: cancels the call's statement in flight, or keeps the call from starting
+        synchronized void cancel() {
+            cancelled = true;
+            if (oracle != null) {
+                oracle.cancel();
+            }
+        }
+
+        // Member Variables
+        private StudentFakebookOracle oracle;
+        private boolean cancelled = false;
+    }
+
+    // Member Variables
+    private final DataSource dataSource;
+    private final ExecutorService executor;
+    private final FakebookOracleState state;
+    private final FakebookOracleConfig config;
+    private final Map<QueryId, LongAdder> completions = new EnumMap<QueryId, LongAdder>(QueryId.class);
+    private final Map<QueryId, LongAdder> timeouts = new EnumMap<QueryId, LongAdder>(QueryId.class);
+    private final Map<QueryId, LongAdder> cancellations = new EnumMap<QueryId, LongAdder>(QueryId.class);
+}
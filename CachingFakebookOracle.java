@@ -0,0 +1,276 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    The CachingFakebookOracle class answers FakebookOracle queries from a cache in front of another
+    oracle (<delegate>). Answers are keyed by QueryCall (the query plus its arguments) and leave
+    the cache when
+
+        - they are older than <ttlMillis>,
+        - one of the tables the query reads has changed since the answer was computed, according
+          to <tableVersions> (see TableVersions), or
+        - more than <capacity> answers are cached and they are the least recently used.
+
+    Only the queries in <cachedQueries> are cached; the others always go to <delegate>. By default
+    those are the aggregate queries, whose answers rarely change: findMonthOfBirthInfo,
+    findNameInfo, lonelyUsers and findEventStates.
+
+    Cached answers are shared between callers, who must not modify them. A query that fails
+    answers with its usual sentinel, which is passed on but not cached, so the next call evaluates
+    the query again. Failures are told apart from answers by the failure <delegate> reports (see
+    QueryFailure), not by the answer, so an empty list or an EventStateInfo(-1) that is the real
+    answer is cached like any other.
+*/
+public final class CachingFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 1 and <ttlMillis> >= 0
+    public CachingFakebookOracle(FakebookOracle delegate, TableVersions tableVersions, int capacity, long ttlMillis) {
+        this(delegate, tableVersions, capacity, ttlMillis, EnumSet.of(QueryId.MONTH_OF_BIRTH_INFO, QueryId.NAME_INFO, QueryId.LONELY_USERS, QueryId.EVENT_STATES));
+    }
+
+    // [Constructor]
+    // REQUIRES: <capacity> >= 1 and <ttlMillis> >= 0
+    // EFFECTS: caches the answers of the queries in <cachedQueries>
+    public CachingFakebookOracle(FakebookOracle delegate, TableVersions tableVersions, int capacity, long ttlMillis, Set<QueryId> cachedQueries) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("result cache capacity must be at least 1");
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("ttlMillis must not be negative");
+        }
+        this.delegate = delegate;
+        this.tableVersions = tableVersions;
+        this.capacity = capacity;
+        this.ttlNanos = ttlMillis * 1000000L;
+        this.cachedQueries = EnumSet.copyOf(cachedQueries);
+        for (QueryId query : QueryId.values()) {
+            hits.put(query, 0L);
+            misses.put(query, 0L);
+        }
+    }
+
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return cached(QueryCall.monthOfBirthInfo(), () -> delegate.findMonthOfBirthInfo());
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return cached(QueryCall.nameInfo(), () -> delegate.findNameInfo());
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return cached(QueryCall.lonelyUsers(), () -> delegate.lonelyUsers());
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return cached(QueryCall.liveAwayFromHome(), () -> delegate.liveAwayFromHome());
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return cached(QueryCall.photosWithMostTags(num), () -> delegate.findPhotosWithMostTags(num));
+    }
+
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        return cached(QueryCall.matchMaker(num, yearDiff), () -> delegate.matchMaker(num, yearDiff));
+    }
+
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        return cached(QueryCall.suggestFriends(num), () -> delegate.suggestFriends(num));
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return cached(QueryCall.eventStates(), () -> delegate.findEventStates());
+    }
+
+    @Override
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        return cached(QueryCall.ageInfo(userID), () -> delegate.findAgeInfo(userID));
+    }
+
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return cached(QueryCall.potentialSiblings(), () -> delegate.findPotentialSiblings());
+    }
+
+    // EFFECTS: returns the tables <query> reads, whose changes invalidate its cached answers
+    static String[] tablesOf(QueryId query) {
+        switch (query) {
+            case MONTH_OF_BIRTH_INFO:
+            case NAME_INFO:
+                return new String[] { FakebookOracleConstants.UsersTable };
+            case LONELY_USERS:
+            case SUGGEST_FRIENDS:
+            case AGE_INFO:
+                return new String[] { FakebookOracleConstants.UsersTable, FakebookOracleConstants.FriendsTable };
+            case LIVE_AWAY_FROM_HOME:
+                return new String[] { FakebookOracleConstants.UsersTable, FakebookOracleConstants.CurrentCitiesTable, FakebookOracleConstants.HometownCitiesTable };
+            case PHOTOS_WITH_MOST_TAGS:
+                return new String[] { FakebookOracleConstants.UsersTable, FakebookOracleConstants.AlbumsTable, FakebookOracleConstants.PhotosTable, FakebookOracleConstants.TagsTable };
+            case MATCH_MAKER:
+                return new String[] { FakebookOracleConstants.UsersTable, FakebookOracleConstants.FriendsTable, FakebookOracleConstants.AlbumsTable, FakebookOracleConstants.PhotosTable, FakebookOracleConstants.TagsTable };
+            case EVENT_STATES:
+                return new String[] { FakebookOracleConstants.EventsTable, FakebookOracleConstants.CitiesTable };
+            case POTENTIAL_SIBLINGS:
+                return new String[] { FakebookOracleConstants.UsersTable, FakebookOracleConstants.FriendsTable, FakebookOracleConstants.HometownCitiesTable };
+            default:
+                throw new IllegalArgumentException("unknown query " + query);
+        }
+    }
+
+    // One evaluation of a query on the delegate
+    private interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    // EFFECTS: returns the cached answer to <call> if it is still current, and otherwise
+    //          evaluates <query> and caches its answer unless the query failed. The
+    //          table versions are read before the evaluation, so a change made while it runs
+    //          leaves the new entry already stale.
+    @SuppressWarnings("unchecked")
+    private <T> T cached(QueryCall call, Query<T> query) throws SQLException {
+        if (!cachedQueries.contains(call.query())) {
+            return query.run();
+        }
+        String[] tables = tablesOf(call.query());
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = tableVersions.version(tables[i]);
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry entry = entries.get(call);
+            if (entry != null) {
+                if (now - entry.created > ttlNanos) {
+                    entries.remove(call);
+                    expirations++;
+                }
+                else if (!Arrays.equals(entry.versions, versions)) {
+                    entries.remove(call);
+                    invalidations++;
+                }
+                else {
+                    hits.merge(call.query(), 1L, Long::sum);
+                    return (T) entry.answer;
+                }
+            }
+            misses.merge(call.query(), 1L, Long::sum);
+        }
+        long failures = QueryFailure.count();
+        T answer = query.run();
+        if (QueryFailure.count() != failures) {
+            return answer;
+        }
+        synchronized (this) {
+            entries.put(call, new Entry(answer, versions, now));
+        }
+        return answer;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: drops every cached answer; the counters are kept
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // The number of calls answered from the cache
+    public synchronized long hits() {
+        long total = 0;
+        for (long count : hits.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    // The number of cacheable calls that had to be evaluated
+    public synchronized long misses() {
+        long total = 0;
+        for (long count : misses.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    // The fraction of cacheable calls answered from the cache
+    public synchronized double hitRatio() {
+        long total = hits() + misses();
+        return total == 0 ? 0.0 : (double) hits() / total;
+    }
+
+    // The fraction of cacheable calls to <query> answered from the cache
+    public synchronized double hitRatio(QueryId query) {
+        long total = hits.get(query) + misses.get(query);
+        return total == 0 ? 0.0 : (double) hits.get(query) / total;
+    }
+
+    // The number of answers dropped because they outlived the TTL
+    public synchronized long expirations() {
+        return expirations;
+    }
+
+    // The number of answers dropped because a table they were computed from changed
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    // The number of answers dropped to make room for others
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // A cached answer with the table versions and time it was computed at
+    private static final class Entry {
+        Entry(Object answer, long[] versions, long created) {
+            this.answer = answer;
+            this.versions = versions;
+            this.created = created;
+        }
+
+        final Object answer;
+        final long[] versions;
+        final long created;
+    }
+
+    // Member Variables
+    private final FakebookOracle delegate;
+    private final TableVersions tableVersions;
+    private final int capacity;
+    private final long ttlNanos;
+    private final Set<QueryId> cachedQueries;
+    private final Map<QueryId, Long> hits = new EnumMap<QueryId, Long>(QueryId.class);
+    private final Map<QueryId, Long> misses = new EnumMap<QueryId, Long>(QueryId.class);
+    private long expirations = 0;
+    private long invalidations = 0;
+    private long evictions = 0;
+    private final LinkedHashMap<QueryCall, Entry> entries = new LinkedHashMap<QueryCall, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<QueryCall, Entry> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            evictions++;
+            return true;
+        }
+    };
+}
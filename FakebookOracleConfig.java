@@ -0,0 +1,193 @@
+package project2;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+    The FakebookOracleConfig class holds the tunable settings of a StudentFakebookOracle. A
+    default configuration runs every query through SQL; individual queries can be switched to
+    another engine either programmatically or through system properties of the form
+
+        -Dfakebook.engine.suggestFriends=in_memory
+        -Dfakebook.crossCheck=true
+        -Dfakebook.statementCacheSize=64
+        -Dfakebook.fetchSize.lonelyUsers=5000
+        -Dfakebook.expectedRows.liveAwayFromHome=2000000
+        -Dfakebook.scrollableCursors=true
+        -Dfakebook.offHeapBitmaps=true
+        -Dfakebook.partitions.liveAwayFromHome=8
+        -Dfakebook.timeoutMillis.matchMaker=2000
+
+    When cross-checking is enabled, every non-SQL evaluation is repeated through SQL and any
+    difference between the two answers is reported on System.err.
+*/
+public final class FakebookOracleConfig {
+    // [Constructor]
+    // EFFECTS: creates a configuration that evaluates every query with SQL
+    public FakebookOracleConfig() {
+        for (QueryId query : QueryId.values()) {
+            engines.put(query, QueryEngine.SQL);
+        }
+    }
+
+    // EFFECTS: creates a configuration from the "fakebook.*" system properties, falling back
+    //          to the defaults for anything that is not set
+    public static FakebookOracleConfig fromSystemProperties() {
+        FakebookOracleConfig config = new FakebookOracleConfig();
+        for (QueryId query : QueryId.values()) {
+            String engine = System.getProperty(PROPERTY_PREFIX + "engine." + query.methodName());
+            if (engine != null) {
+                config.setEngine(query, QueryEngine.valueOf(engine.trim().toUpperCase(Locale.ROOT)));
+            }
+            config.setFetchSize(query, Integer.getInteger(PROPERTY_PREFIX + "fetchSize." + query.methodName(), 0));
+            config.setExpectedRows(query, Long.getLong(PROPERTY_PREFIX + "expectedRows." + query.methodName(), -1L));
+            config.setPartitions(query, Integer.getInteger(PROPERTY_PREFIX + "partitions." + query.methodName(), 1));
+            config.setQueryTimeout(query, Long.getLong(PROPERTY_PREFIX + "timeoutMillis." + query.methodName(), 0L));
+        }
+        config.setCrossCheck(Boolean.getBoolean(PROPERTY_PREFIX + "crossCheck"));
+        config.setScrollableCursors(Boolean.getBoolean(PROPERTY_PREFIX + "scrollableCursors"));
+        config.setOffHeapBitmaps(Boolean.getBoolean(PROPERTY_PREFIX + "offHeapBitmaps"));
+        config.setStatementCacheSize(Integer.getInteger(PROPERTY_PREFIX + "statementCacheSize", config.statementCacheSize()));
+        return config;
+    }
+
+    // The engine used to evaluate <query>
+    public QueryEngine engine(QueryId query) {
+        return engines.get(query);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: evaluates <query> with <engine> from now on
+    public FakebookOracleConfig setEngine(QueryId query, QueryEngine engine) {
+        engines.put(query, engine);
+        return this;
+    }
+
+    // Whether non-SQL evaluations are verified against the SQL path
+    public boolean crossCheck() {
+        return crossCheck;
+    }
+
+    // MODIFIES: this
+    public FakebookOracleConfig setCrossCheck(boolean crossCheck) {
+        this.crossCheck = crossCheck;
+        return this;
+    }
+
+    // The number of prepared statements kept open per connection
+    public int statementCacheSize() {
+        return statementCacheSize;
+    }
+
+    // MODIFIES: this
+    // REQUIRES: <statementCacheSize> >= 1
+    public FakebookOracleConfig setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 1) {
+            throw new IllegalArgumentException("statementCacheSize must be at least 1");
+        }
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    // The fixed fetch size of <query>, or 0 if it is chosen adaptively (see FetchSizeAdvisor)
+    public int fetchSize(QueryId query) {
+        Integer size = fetchSizes.get(query);
+        return size == null ? 0 : size;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: fixes the fetch size of every statement of <query>; 0 restores adaptive sizing
+    public FakebookOracleConfig setFetchSize(QueryId query, int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetchSize must not be negative");
+        }
+        fetchSizes.put(query, fetchSize);
+        return this;
+    }
+
+    // The number of rows <query> is expected to return, or -1 if unknown
+    public long expectedRows(QueryId query) {
+        Long rows = expectedRows.get(query);
+        return rows == null ? -1 : rows;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sizes the first fetches of <query> for about <rows> rows; later fetches adapt to
+    //          the row counts actually observed
+    public FakebookOracleConfig setExpectedRows(QueryId query, long rows) {
+        expectedRows.put(query, rows);
+        return this;
+    }
+
+    // The number of user_id ranges <query> is split into when a PooledFakebookOracle evaluates it,
+    // each scanned on its own connection; 1 runs it as a single statement. Only liveAwayFromHome
+    // and the SQL engine of findPotentialSiblings are partitioned.
+    public int partitions(QueryId query) {
+        Integer count = partitions.get(query);
+        return count == null ? 1 : count;
+    }
+
+    // MODIFIES: this
+    public FakebookOracleConfig setPartitions(QueryId query, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be at least 1");
+        }
+        this.partitions.put(query, partitions);
+        return this;
+    }
+
+    // The deadline of <query> in milliseconds, or 0 if it has none. Every statement of the query
+    // gets it (rounded up to whole seconds) as its JDBC query timeout, and AsyncFakebookOracle
+    // cancels the query once the deadline has passed.
+    public long queryTimeoutMillis(QueryId query) {
+        Long millis = queryTimeouts.get(query);
+        return millis == null ? 0 : millis;
+    }
+
+    // MODIFIES: this
+    public FakebookOracleConfig setQueryTimeout(QueryId query, long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("query timeout must not be negative");
+        }
+        queryTimeouts.put(query, millis);
+        return this;
+    }
+
+    // Whether statements use scroll-insensitive cursors instead of forward-only ones. Scrollable
+    // cursors make the driver cache the whole result on the client; this setting only exists to
+    // measure that cost.
+    public boolean scrollableCursors() {
+        return scrollableCursors;
+    }
+
+    // MODIFIES: this
+    public FakebookOracleConfig setScrollableCursors(boolean scrollableCursors) {
+        this.scrollableCursors = scrollableCursors;
+        return this;
+    }
+
+    // Whether the bitmaps of the in-memory engines keep their dense containers outside the Java
+    // heap (see UserIdBitmap)
+    public boolean offHeapBitmaps() {
+        return offHeapBitmaps;
+    }
+
+    // MODIFIES: this
+    public FakebookOracleConfig setOffHeapBitmaps(boolean offHeapBitmaps) {
+        this.offHeapBitmaps = offHeapBitmaps;
+        return this;
+    }
+
+    // Member Variables
+    private static final String PROPERTY_PREFIX = "fakebook.";
+    private final Map<QueryId, QueryEngine> engines = new EnumMap<QueryId, QueryEngine>(QueryId.class);
+    private boolean crossCheck = false;
+    private int statementCacheSize = 32;
+    private final Map<QueryId, Integer> fetchSizes = new EnumMap<QueryId, Integer>(QueryId.class);
+    private final Map<QueryId, Long> expectedRows = new EnumMap<QueryId, Long>(QueryId.class);
+    private final Map<QueryId, Integer> partitions = new EnumMap<QueryId, Integer>(QueryId.class);
+    private final Map<QueryId, Long> queryTimeouts = new EnumMap<QueryId, Long>(QueryId.class);
+    private boolean scrollableCursors = false;
+    private boolean offHeapBitmaps = false;
+}
@@ -0,0 +1,198 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The FakebookOracleState class holds what a StudentFakebookOracle builds up over many queries,
+    so that oracles built per query (PooledFakebookOracle, AsyncFakebookOracle) share it instead
+    of starting cold every time, and so that writers can reach the maintained aggregates of every
+    oracle answering queries:
+
+        statement caches    one StatementCache per connection handle an oracle is built on
+        fetch sizes         the FetchSizeAdvisor and the row counts it has observed
+        friend graph        the in-memory copy of the Friends table (Query 6)
+        aggregates          the maintained IncrementalAggregates (Query 0 and Query 7)
+        tag counts          the maintained PhotoTagCounts (Query 4)
+
+    A state belongs to one database (for ShardedFakebookOracle, to all of its shards together)
+    and one FakebookOracleConfig. The in-memory structures are loaded by the first query that
+    needs them, through the StatementRunner of its oracle, and kept until refreshed. A load
+    therefore runs under that query's timeout and stops when its oracle is cancelled; a load that
+    fails keeps nothing, and the next query that needs the structure loads it again.
+
+    Writers reach the maintained structures through the state the oracles were built with: the
+    one passed to their constructor, or the one state() returns. Once a change is committed, the
+    writer reports it to loadedAggregates(). While that returns null nothing has been loaded, and
+    the first load reads the committed change itself. Tags changes go to loadedTagCounts() the
+    same way. A change committed while the first load is running may be counted twice or missed;
+    a writer that cannot rule this out, or that skipped reporting (a bulk load), calls
+    refreshAggregates() or refreshTagCounts() afterwards.
+
+    A statement cache is keyed by the connection handle it was created for, exactly as the oracle
+    received it, and prepares its statements through that handle, so a pool sees and tracks every
+    statement. An oracle that shares a state releases the cache of its handle when it is closed,
+    before a pooled handle goes back to the pool. Statements therefore do not outlive a borrow
+    here: reuse from one borrower of a physical connection to the next is left to the statement
+    cache of the pool or the driver, which holds statements a borrower closes and hands them back
+    to the next prepare of the same SQL (for example Oracle implicit statement caching, enabled
+    with the connection property oracle.jdbc.implicitStatementCacheSize, or poolPreparedStatements
+    in DBCP). Oracles sharing a state must not share a handle; caches of handles found closed are
+    dropped.
+*/
+public final class FakebookOracleState implements AutoCloseable {
+    // [Constructor]
+    // EFFECTS: creates an empty state for oracles configured by <config>
+    public FakebookOracleState(FakebookOracleConfig config) {
+        this.config = config;
+        fetchSizes = new FetchSizeAdvisor(config);
+    }
+
+    // The configuration of every oracle sharing this state
+    public FakebookOracleConfig config() {
+        return config;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: discards the in-memory copy of the Friends table so that the next in-memory
+    //          evaluation reloads it
+    public void refreshFriendGraph() {
+        synchronized (friendGraphLock) {
+            friendGraph = null;
+        }
+    }
+
+    // EFFECTS: returns the maintained aggregates for a writer to report its changes to, or null
+    //          if no query has loaded them yet
+    public IncrementalAggregates loadedAggregates() {
+        synchronized (aggregatesLock) {
+            return aggregates;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: discards the maintained aggregates so that the next in-memory evaluation of
+    //          Query 0 or Query 7 reloads them, e.g. after a bulk load that reported no deltas
+    public void refreshAggregates() {
+        synchronized (aggregatesLock) {
+            aggregates = null;
+        }
+    }
+
+    // EFFECTS: returns the maintained tag counts for a writer to report its changes to, or null
+    //          if no query has loaded them yet
+    public PhotoTagCounts loadedTagCounts() {
+        synchronized (tagCountsLock) {
+            return tagCounts;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: discards the maintained tag counts so that the next in-memory evaluation of
+    //          Query 4 reloads them
+    public void refreshTagCounts() {
+        synchronized (tagCountsLock) {
+            tagCounts = null;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes every cached statement; the connections are owned by others and stay open
+    @Override
+    public synchronized void close() {
+        for (StatementCache statements : statementCaches.values()) {
+            statements.close();
+        }
+        statementCaches.clear();
+    }
+
+    // EFFECTS: returns the statement cache of the handle <connection>, creating it on first use
+    synchronized StatementCache statements(Connection connection) {
+        StatementCache statements = statementCaches.get(connection);
+        if (statements == null) {
+            for (Iterator<Map.Entry<Connection, StatementCache>> it = statementCaches.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Connection, StatementCache> entry = it.next();
+                if (isClosed(entry.getKey())) {
+                    entry.getValue().close();
+                    it.remove();
+                }
+            }
+            int cursorType = config.scrollableCursors() ? FakebookOracleConstants.AllScroll : ResultSet.TYPE_FORWARD_ONLY;
+            statements = new StatementCache(connection, config.statementCacheSize(), cursorType, FakebookOracleConstants.ReadOnly);
+            statementCaches.put(connection, statements);
+        }
+        return statements;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the statements cached for the handle <connection> and forgets its cache;
+    //          the connection itself stays open
+    synchronized void release(Connection connection) {
+        StatementCache statements = statementCaches.remove(connection);
+        if (statements != null) {
+            statements.close();
+        }
+    }
+
+    FetchSizeAdvisor fetchSizes() {
+        return fetchSizes;
+    }
+
+    // EFFECTS: returns the in-memory copy of the Friends rows read through <runners>, loading it
+    //          on first use
+    FriendGraph friendGraph(List<StatementRunner> runners) throws SQLException {
+        synchronized (friendGraphLock) {
+            if (friendGraph == null) {
+                friendGraph = FriendGraph.load(runners, FakebookOracleConstants.FriendsTable);
+            }
+            return friendGraph;
+        }
+    }
+
+    // EFFECTS: returns the aggregates of the tables read through <runners>, loading them on first
+    //          use
+    IncrementalAggregates aggregates(List<StatementRunner> runners) throws SQLException {
+        synchronized (aggregatesLock) {
+            if (aggregates == null) {
+                aggregates = IncrementalAggregates.load(runners, FakebookOracleConstants.UsersTable, FakebookOracleConstants.EventsTable, FakebookOracleConstants.CitiesTable);
+            }
+            return aggregates;
+        }
+    }
+
+    // EFFECTS: returns the tag counts of the photos read through <runners>, loading them on first
+    //          use
+    PhotoTagCounts tagCounts(List<StatementRunner> runners) throws SQLException {
+        synchronized (tagCountsLock) {
+            if (tagCounts == null) {
+                tagCounts = PhotoTagCounts.load(runners, FakebookOracleConstants.TagsTable);
+            }
+            return tagCounts;
+        }
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        }
+        catch (SQLException e) {
+            return true;
+        }
+    }
+
+    // Member Variables
+    private final FakebookOracleConfig config;
+    private final FetchSizeAdvisor fetchSizes;
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<Connection, StatementCache>();
+    private final Object friendGraphLock = new Object();
+    private FriendGraph friendGraph;
+    private final Object aggregatesLock = new Object();
+    private IncrementalAggregates aggregates;
+    private final Object tagCountsLock = new Object();
+    private PhotoTagCounts tagCounts;
+}
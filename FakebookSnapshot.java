@@ -0,0 +1,497 @@
+package project2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The FakebookSnapshot class is a read-only, memory-mapped copy of the Users, Friends and Tags
+    tables in a compact columnar file, so that a process can answer lookups over them within
+    moments of starting instead of pulling the tables through JDBC first. write() exports the
+    tables once; open() maps the file with FileChannel.map, and every lookup then reads the
+    mapped pages directly, off the Java heap.
+
+    FILE FORMAT (big-endian)
+    ============================================
+    header      magic "FBSNAP01" (8 bytes), format version (int), section count (int), then one
+                (offset, length) pair of longs per section, in the order of the SECTION_* constants
+    user ids    one long per user, ascending; a user's position in this column is its index
+    first/last  one int per user: the code of the name in the dictionary, or -1 for NULL
+    year/month/
+    day         one int per user: the date of birth part, or NULL_INT for NULL
+    friends     CSR adjacency: FRIEND_OFFSETS holds userCount + 1 ints, and the friends of user i
+                are the user indexes FRIENDS[offsets[i]] to FRIENDS[offsets[i + 1] - 1], in user
+                ID order. Both directions of every Friends row are stored once each.
+    tags        TAG_PHOTOS and TAG_SUBJECTS, one long each per Tags row, ordered by (photo,
+                subject)
+    dictionary  DICTIONARY_OFFSETS holds n + 1 ints into the UTF-8 bytes of DICTIONARY_BYTES;
+                name k is the bytes from offsets[k] to offsets[k + 1]
+
+    Friendships and date parts are kept only for users present in UsersTable, as the queries'
+    joins with UsersTable keep them. Each section is mapped on its own and may hold up to 2 GB.
+    A snapshot does not follow later changes to the tables; write a new one to refresh it.
+*/
+public final class FakebookSnapshot implements AutoCloseable {
+    // [Constructor]
+    private FakebookSnapshot(FileChannel channel, ByteBuffer[] sections) {
+        this.channel = channel;
+        this.userIds = sections[SECTION_USER_IDS].asLongBuffer();
+        this.firstNames = sections[SECTION_FIRST_NAMES].asIntBuffer();
+        this.lastNames = sections[SECTION_LAST_NAMES].asIntBuffer();
+        this.years = sections[SECTION_YEARS].asIntBuffer();
+        this.months = sections[SECTION_MONTHS].asIntBuffer();
+        this.days = sections[SECTION_DAYS].asIntBuffer();
+        this.friendOffsets = sections[SECTION_FRIEND_OFFSETS].asIntBuffer();
+        this.friends = sections[SECTION_FRIENDS].asIntBuffer();
+        this.tagPhotos = sections[SECTION_TAG_PHOTOS].asLongBuffer();
+        this.tagSubjects = sections[SECTION_TAG_SUBJECTS].asLongBuffer();
+        this.dictionaryOffsets = sections[SECTION_DICTIONARY_OFFSETS].asIntBuffer();
+        this.dictionaryBytes = sections[SECTION_DICTIONARY_BYTES];
+    }
+
+    // MODIFIES: <file>
+    // EFFECTS: exports <usersTable>, <friendsTable> and <tagsTable> read through <connection> into
+    //          a snapshot file at <file>, replacing it only once the new file is complete
+    public static void write(Connection connection, String usersTable, String friendsTable, String tagsTable, Path file) throws SQLException, IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long[] sections = new long[2 * SECTION_COUNT];
+            out.position(headerBytes());
+
+            // Users, in user ID order, with first and last names dictionary-encoded
+            long[] ids = new long[1024];
+            int[][] columns = new int[5][1024];
+            int count = 0;
+            Map<String, Integer> codes = new HashMap<String, Integer>();
+            List<String> names = new ArrayList<String>();
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "select user_id, first_name, last_name, year_of_birth, month_of_birth, day_of_birth from " + usersTable + " order by user_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(LOAD_FETCH_SIZE);
+                try (ResultSet rst = stmt.executeQuery()) {
+                    while (rst.next()) {
+                        if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                            for (int c = 0; c < columns.length; c++) {
+                                columns[c] = Arrays.copyOf(columns[c], count * 2);
+                            }
+                        }
+                        ids[count] = rst.getLong(1);
+                        columns[0][count] = code(rst.getString(2), codes, names);
+                        columns[1][count] = code(rst.getString(3), codes, names);
+                        for (int c = 2; c < columns.length; c++) {
+                            int value = rst.getInt(c + 2);
+                            columns[c][count] = rst.wasNull() ? NULL_INT : value;
+                        }
+                        count++;
+                    }
+                }
+            }
+            writeLongs(out, sections, SECTION_USER_IDS, ids, count);
+            for (int c = 0; c < columns.length; c++) {
+                writeInts(out, sections, SECTION_FIRST_NAMES + c, columns[c], count);
+            }
+
+            // Friends as CSR adjacency over user indexes, both directions, streamed in order
+            int[] offsets = new int[count + 1];
+            long start = out.position();
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ORDER);
+            int edges = 0;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "select user1_id, user2_id from " + friendsTable + " union select user2_id, user1_id from " + friendsTable + " order by 1, 2",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(LOAD_FETCH_SIZE);
+                try (ResultSet rst = stmt.executeQuery()) {
+                    while (rst.next()) {
+                        long userId = rst.getLong(1);
+                        boolean userNull = rst.wasNull();
+                        long friendId = rst.getLong(2);
+                        if (userNull || rst.wasNull()) {
+                            continue;
+                        }
+                        int user = Arrays.binarySearch(ids, 0, count, userId);
+                        int friend = Arrays.binarySearch(ids, 0, count, friendId);
+                        if (user < 0 || friend < 0) {
+                            continue;
+                        }
+                        if (buffer.remaining() < Integer.BYTES) {
+                            drain(out, buffer);
+                        }
+                        buffer.putInt(friend);
+                        offsets[user + 1]++;
+                        edges++;
+                    }
+                }
+            }
+            drain(out, buffer);
+            sections[2 * SECTION_FRIENDS] = start;
+            sections[2 * SECTION_FRIENDS + 1] = (long) edges * Integer.BYTES;
+            for (int i = 0; i < count; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            writeInts(out, sections, SECTION_FRIEND_OFFSETS, offsets, count + 1);
+
+            // Tags, ordered by photo
+            long[] photos = new long[1024];
+            long[] subjects = new long[1024];
+            int tags = 0;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "select tag_photo_id, tag_subject_id from " + tagsTable + " order by 1, 2",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(LOAD_FETCH_SIZE);
+                try (ResultSet rst = stmt.executeQuery()) {
+                    while (rst.next()) {
+                        if (tags == photos.length) {
+                            photos = Arrays.copyOf(photos, tags * 2);
+                            subjects = Arrays.copyOf(subjects, tags * 2);
+                        }
+                        photos[tags] = rst.getLong(1);
+                        subjects[tags] = rst.getLong(2);
+                        tags++;
+                    }
+                }
+            }
+            writeLongs(out, sections, SECTION_TAG_PHOTOS, photos, tags);
+            writeLongs(out, sections, SECTION_TAG_SUBJECTS, subjects, tags);
+
+            // The name dictionary
+            int[] nameOffsets = new int[names.size() + 1];
+            List<byte[]> encoded = new ArrayList<byte[]>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                byte[] bytes = names.get(i).getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                nameOffsets[i + 1] = Math.addExact(nameOffsets[i], bytes.length);
+            }
+            writeInts(out, sections, SECTION_DICTIONARY_OFFSETS, nameOffsets, nameOffsets.length);
+            sections[2 * SECTION_DICTIONARY_BYTES] = out.position();
+            sections[2 * SECTION_DICTIONARY_BYTES + 1] = nameOffsets[names.size()];
+            for (byte[] bytes : encoded) {
+                if (buffer.remaining() < bytes.length) {
+                    drain(out, buffer);
+                }
+                if (bytes.length > buffer.capacity()) {
+                    out.write(ByteBuffer.wrap(bytes));
+                }
+                else {
+                    buffer.put(bytes);
+                }
+            }
+            drain(out, buffer);
+
+            // The header goes last, once every section's place is known
+            ByteBuffer header = ByteBuffer.allocate(headerBytes()).order(ORDER);
+            header.putLong(MAGIC).putInt(VERSION).putInt(SECTION_COUNT);
+            for (long value : sections) {
+                header.putLong(value);
+            }
+            header.flip();
+            out.position(0);
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            out.force(true);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // EFFECTS: maps the snapshot at <file>; fails if it is not a snapshot or was written in
+    //          another format version
+    public static FakebookSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(headerBytes()).order(ORDER);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < headerBytes() || header.getLong() != MAGIC) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION || header.getInt() != SECTION_COUNT) {
+                throw new IOException(file + " has snapshot format version " + version + ", expected " + VERSION);
+            }
+            ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (length > Integer.MAX_VALUE || offset + length > channel.size()) {
+                    throw new IOException(file + " is truncated or has a section over 2 GB");
+                }
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ORDER);
+            }
+            return new FakebookSnapshot(channel, sections);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // The number of users
+    public int userCount() {
+        return userIds.limit();
+    }
+
+    // EFFECTS: returns the index of the user with ID <userId>, or -1 if there is none
+    public int indexOf(long userId) {
+        int low = 0;
+        int high = userIds.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = userIds.get(mid);
+            if (id < userId) {
+                low = mid + 1;
+            }
+            else if (id > userId) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public long userId(int index) {
+        return userIds.get(index);
+    }
+
+    // The first name of the user at <index>, or null
+    public String firstName(int index) {
+        return name(firstNames.get(index));
+    }
+
+    // The last name of the user at <index>, or null
+    public String lastName(int index) {
+        return name(lastNames.get(index));
+    }
+
+    // The birth year of the user at <index>, or NULL_INT if it is not known
+    public int yearOfBirth(int index) {
+        return years.get(index);
+    }
+
+    // The number of friends of the user at <index>
+    public int friendCount(int index) {
+        return friendOffsets.get(index + 1) - friendOffsets.get(index);
+    }
+
+    // REQUIRES: 0 <= <k> < friendCount(<index>)
+    // EFFECTS: returns the index of the <k>-th friend, in user ID order, of the user at <index>
+    public int friend(int index, int k) {
+        return friends.get(friendOffsets.get(index) + k);
+    }
+
+    // EFFECTS: returns the index of the oldest friend of the user with ID <userId>, chosen as
+    //          findAgeInfo orders friends (earliest date of birth, unknown parts last, then the
+    //          highest user ID), or -1 if the user has no friends
+    public int oldestFriend(long userId) {
+        return extremeFriend(userId, true);
+    }
+
+    // EFFECTS: returns the index of the youngest friend of the user with ID <userId>, chosen as
+    //          findAgeInfo orders friends (latest date of birth, unknown parts first, then the
+    //          lowest user ID), or -1 if the user has no friends
+    public int youngestFriend(long userId) {
+        return extremeFriend(userId, false);
+    }
+
+    // EFFECTS: returns the user IDs tagged in the photo with ID <photoId>, ascending
+    public long[] taggedUsers(long photoId) {
+        int from = firstTagAtOrAfter(photoId);
+        int to = firstTagAtOrAfter(photoId + 1);
+        long[] users = new long[to - from];
+        for (int i = from; i < to; i++) {
+            users[i - from] = tagSubjects.get(i);
+        }
+        return users;
+    }
+
+    // The number of Tags rows
+    public int tagCount() {
+        return tagPhotos.limit();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the file; the mapped pages are released once no buffer refers to them
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // The value stored for an unknown (NULL) year, month or day of birth
+    public static final int NULL_INT = Integer.MIN_VALUE;
+
+    private int extremeFriend(long userId, boolean oldest) {
+        int user = indexOf(userId);
+        if (user < 0) {
+            return -1;
+        }
+        int best = -1;
+        for (int k = friendOffsets.get(user); k < friendOffsets.get(user + 1); k++) {
+            int candidate = friends.get(k);
+            if (best < 0) {
+                best = candidate;
+                continue;
+            }
+            int order = compareBirth(candidate, best);
+            // friends are in user ID order, so on a tie the later one has the higher ID
+            if (oldest ? order <= 0 : order > 0) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    // EFFECTS: compares the dates of birth of the users at <a> and <b> part by part, an unknown
+    //          part sorting after every known one, as Oracle sorts NULLs in ascending order
+    private int compareBirth(int a, int b) {
+        int order = compareNullsLast(years.get(a), years.get(b));
+        if (order == 0) {
+            order = compareNullsLast(months.get(a), months.get(b));
+        }
+        if (order == 0) {
+            order = compareNullsLast(days.get(a), days.get(b));
+        }
+        return order;
+    }
+
+    private static int compareNullsLast(int a, int b) {
+        if (a == NULL_INT || b == NULL_INT) {
+            return Boolean.compare(a == NULL_INT, b == NULL_INT);
+        }
+        return Integer.compare(a, b);
+    }
+
+    // EFFECTS: returns the first position in the tag columns whose photo ID is >= <photoId>
+    private int firstTagAtOrAfter(long photoId) {
+        int low = 0;
+        int high = tagPhotos.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tagPhotos.get(mid) < photoId) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private String name(int code) {
+        if (code < 0) {
+            return null;
+        }
+        int from = dictionaryOffsets.get(code);
+        byte[] bytes = new byte[dictionaryOffsets.get(code + 1) - from];
+        dictionaryBytes.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // EFFECTS: returns the dictionary code of <name>, adding it if new, or -1 for NULL
+    private static int code(String name, Map<String, Integer> codes, List<String> names) {
+        if (name == null) {
+            return -1;
+        }
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    private static int headerBytes() {
+        return Long.BYTES + 2 * Integer.BYTES + SECTION_COUNT * 2 * Long.BYTES;
+    }
+
+    // MODIFIES: out, sections
+    private static void writeLongs(FileChannel out, long[] sections, int section, long[] values, int count) throws IOException {
+        sections[2 * section] = out.position();
+        sections[2 * section + 1] = (long) count * Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ORDER);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < Long.BYTES) {
+                drain(out, buffer);
+            }
+            buffer.putLong(values[i]);
+        }
+        drain(out, buffer);
+    }
+
+    // MODIFIES: out, sections
+    private static void writeInts(FileChannel out, long[] sections, int section, int[] values, int count) throws IOException {
+        sections[2 * section] = out.position();
+        sections[2 * section + 1] = (long) count * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ORDER);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < Integer.BYTES) {
+                drain(out, buffer);
+            }
+            buffer.putInt(values[i]);
+        }
+        drain(out, buffer);
+    }
+
+    // MODIFIES: out, buffer
+    // EFFECTS: writes out what <buffer> holds and empties it
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Member Variables
+    private static final long MAGIC = 0x4642534E41503031L;     // "FBSNAP01"
+    private static final int VERSION = 1;
+    private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+    private static final int SECTION_USER_IDS = 0;
+    private static final int SECTION_FIRST_NAMES = 1;
+    private static final int SECTION_LAST_NAMES = 2;
+    private static final int SECTION_YEARS = 3;
+    private static final int SECTION_MONTHS = 4;
+    private static final int SECTION_DAYS = 5;
+    private static final int SECTION_FRIEND_OFFSETS = 6;
+    private static final int SECTION_FRIENDS = 7;
+    private static final int SECTION_TAG_PHOTOS = 8;
+    private static final int SECTION_TAG_SUBJECTS = 9;
+    private static final int SECTION_DICTIONARY_OFFSETS = 10;
+    private static final int SECTION_DICTIONARY_BYTES = 11;
+    private static final int SECTION_COUNT = 12;
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+    private final FileChannel channel;
+    private final LongBuffer userIds;
+    private final IntBuffer firstNames;
+    private final IntBuffer lastNames;
+    private final IntBuffer years;
+    private final IntBuffer months;
+    private final IntBuffer days;
+    private final IntBuffer friendOffsets;
+    private final IntBuffer friends;
+    private final LongBuffer tagPhotos;
+    private final LongBuffer tagSubjects;
+    private final IntBuffer dictionaryOffsets;
+    private final ByteBuffer dictionaryBytes;
+}
@@ -0,0 +1,71 @@
+package project2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The FetchSizeAdvisor class chooses the JDBC fetch size (rows per round trip) for each
+    statement of each query. A fetch size set explicitly in the FakebookOracleConfig always wins.
+    Otherwise the advisor sizes the fetch to the number of rows the statement is expected to
+    return, so small results arrive in a single round trip and large ones in few, bounded ones:
+
+        expected rows   the smoothed row count of earlier executions of the same statement,
+                        or, before the first execution, the expectedRows hint from the config
+
+    The fetch size is the expected row count plus one (so the end of the result fits in the same
+    round trip), rounded up to a power of two and clamped to [MIN_FETCH_SIZE, MAX_FETCH_SIZE].
+*/
+final class FetchSizeAdvisor {
+    // [Constructor]
+    FetchSizeAdvisor(FakebookOracleConfig config) {
+        this.config = config;
+    }
+
+    // EFFECTS: returns the fetch size for step <step> of <query>, using <fallback> when neither the
+    //          config nor earlier executions say anything about it
+    synchronized int fetchSize(QueryId query, String step, int fallback) {
+        int configured = config.fetchSize(query);
+        if (configured > 0) {
+            return configured;
+        }
+        Double observed = expectedRows.get(key(query, step));
+        if (observed != null) {
+            return sizeFor(observed);
+        }
+        long hint = config.expectedRows(query);
+        return hint >= 0 ? sizeFor(hint) : fallback;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: remembers that step <step> of <query> just returned <rows> rows
+    synchronized void record(QueryId query, String step, long rows) {
+        String key = key(query, step);
+        Double observed = expectedRows.get(key);
+        expectedRows.put(key, observed == null ? rows : observed + SMOOTHING * (rows - observed));
+    }
+
+    // EFFECTS: returns the fetch size that reads <rows> rows (and the end of the result) in one
+    //          round trip, within the allowed bounds
+    static int sizeFor(double rows) {
+        if (rows + 1 >= MAX_FETCH_SIZE) {
+            return MAX_FETCH_SIZE;
+        }
+        int size = MIN_FETCH_SIZE;
+        while (size < rows + 1) {
+            size <<= 1;
+        }
+        return Math.min(size, MAX_FETCH_SIZE);
+    }
+
+    private static String key(QueryId query, String step) {
+        return query.methodName() + "#" + step;
+    }
+
+    // Member Variables
+    static final int MIN_FETCH_SIZE = 16;
+    static final int MAX_FETCH_SIZE = 8192;
+    static final int DEFAULT_FETCH_SIZE = 128;
+    private static final double SMOOTHING = 0.5;
+    private final FakebookOracleConfig config;
+    private final Map<String, Double> expectedRows = new HashMap<String, Double>();
+}
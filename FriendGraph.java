@@ -0,0 +1,270 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    The FriendGraph class is an immutable, in-memory copy of the Friends table stored in
+    compressed sparse row (CSR) form:
+
+        ids[v]                              the user ID of vertex v, sorted ascending
+        neighbors[offsets[v]..offsets[v+1]) the vertices adjacent to v, sorted ascending
+
+    Because vertices are numbered in user ID order, comparing vertex numbers is the same as
+    comparing user IDs, and every adjacency list is also sorted by user ID. The whole graph is
+    held in three primitive arrays, so a graph with E friendships costs roughly 8V + 4V + 8E bytes
+    no matter how the edges are distributed.
+
+    Only users with at least one friend appear in the graph.
+*/
+final class FriendGraph {
+    // [Constructor]
+    // REQUIRES: <ids> is sorted and <offsets>/<neighbors> describe a symmetric CSR graph over it
+    private FriendGraph(long[] ids, int[] offsets, int[] neighbors) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    // EFFECTS: reads every (user1_id, user2_id) row of <friendsTable> once through <runner> and
+    //          builds the graph
+    static FriendGraph load(StatementRunner runner, String friendsTable) throws SQLException {
+        return load(Collections.singletonList(runner), friendsTable);
+    }
+
+    // EFFECTS: reads the rows of <friendsTable> through each of <runners> in turn and builds one
+    //          graph over all of them; a friendship stored on several connections counts once
+    static FriendGraph load(List<StatementRunner> runners, String friendsTable) throws SQLException {
+        long[] from = new long[1024];
+        long[] to = new long[1024];
+        int edges = 0;
+        for (StatementRunner runner : runners) {
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select user1_id, user2_id from " + friendsTable,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        if (++rows % LOAD_FETCH_SIZE == 0) {
+                            runner.checkCancelled();
+                        }
+                        if (edges == from.length) {
+                            from = Arrays.copyOf(from, edges * 2);
+                            to = Arrays.copyOf(to, edges * 2);
+                        }
+                        from[edges] = rst.getLong(1);
+                        to[edges] = rst.getLong(2);
+                        edges++;
+                    }
+                    runner.fetched(rows);
+                }
+            }
+        }
+        return build(from, to, edges);
+    }
+
+    // EFFECTS: builds the graph from the first <edges> entries of <from>/<to>; each entry is an
+    //          undirected friendship, duplicates and self-friendships are ignored
+    static FriendGraph build(long[] from, long[] to, int edges) {
+        // Step 1
+        // ------------
+        // * Collect the distinct user IDs; their sorted position becomes the vertex number
+        long[] all = new long[2 * edges];
+        System.arraycopy(from, 0, all, 0, edges);
+        System.arraycopy(to, 0, all, edges, edges);
+        Arrays.sort(all);
+        int vertices = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[vertices++] = all[i];
+            }
+        }
+        long[] ids = Arrays.copyOf(all, vertices);
+
+        // Step 2
+        // ------------
+        // * Count degrees, turn them into offsets and scatter both directions of every edge
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        int[] offsets = new int[vertices + 1];
+        for (int e = 0; e < edges; e++) {
+            src[e] = Arrays.binarySearch(ids, from[e]);
+            dst[e] = Arrays.binarySearch(ids, to[e]);
+            if (src[e] != dst[e]) {
+                offsets[src[e] + 1]++;
+                offsets[dst[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < vertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] cursor = Arrays.copyOf(offsets, vertices);
+        int[] neighbors = new int[offsets[vertices]];
+        for (int e = 0; e < edges; e++) {
+            if (src[e] != dst[e]) {
+                neighbors[cursor[src[e]]++] = dst[e];
+                neighbors[cursor[dst[e]]++] = src[e];
+            }
+        }
+
+        // Step 3
+        // ------------
+        // * Sort every adjacency list and squeeze out duplicate edges
+        int write = 0;
+        int start = 0;
+        for (int v = 0; v < vertices; v++) {
+            int end = offsets[v + 1];
+            Arrays.sort(neighbors, start, end);
+            offsets[v] = write;
+            for (int i = start; i < end; i++) {
+                if (i == start || neighbors[i] != neighbors[i - 1]) {
+                    neighbors[write++] = neighbors[i];
+                }
+            }
+            start = end;
+        }
+        offsets[vertices] = write;
+        return new FriendGraph(ids, offsets, Arrays.copyOf(neighbors, write));
+    }
+
+    // The number of users with at least one friend
+    int vertexCount() {
+        return ids.length;
+    }
+
+    // The number of friendships
+    long edgeCount() {
+        return neighbors.length / 2;
+    }
+
+    // The vertex of user <userId>, or -1 if the user has no friends
+    int vertexOf(long userId) {
+        int v = Arrays.binarySearch(ids, userId);
+        return v < 0 ? -1 : v;
+    }
+
+    long userId(int vertex) {
+        return ids[vertex];
+    }
+
+    int degree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    // EFFECTS: returns true if users <a> and <b> are friends
+    boolean areFriends(long a, long b) {
+        int u = vertexOf(a);
+        int w = vertexOf(b);
+        return u >= 0 && w >= 0 && adjacent(u, w);
+    }
+
+    // EFFECTS: returns the user IDs of all friends of <userId>, sorted ascending
+    long[] friendsOf(long userId) {
+        int v = vertexOf(userId);
+        if (v < 0) {
+            return new long[0];
+        }
+        long[] result = new long[degree(v)];
+        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+            result[i - offsets[v]] = ids[neighbors[i]];
+        }
+        return result;
+    }
+
+    // EFFECTS: returns the user IDs of the common friends of <a> and <b>, sorted ascending,
+    //          computed by merging the two sorted adjacency lists
+    long[] commonFriends(long a, long b) {
+        int u = vertexOf(a);
+        int w = vertexOf(b);
+        if (u < 0 || w < 0) {
+            return new long[0];
+        }
+        long[] result = new long[Math.min(degree(u), degree(w))];
+        int count = 0;
+        int i = offsets[u];
+        int j = offsets[w];
+        while (i < offsets[u + 1] && j < offsets[w + 1]) {
+            if (neighbors[i] < neighbors[j]) {
+                i++;
+            }
+            else if (neighbors[i] > neighbors[j]) {
+                j++;
+            }
+            else {
+                result[count++] = ids[neighbors[i]];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // EFFECTS: ranks all pairs (a, b) with a < b that are not friends but share at least one
+    //          friend by number of common friends (desc), then a (asc), then b (asc), and
+    //          returns the best <num> of them
+    TopPairs topCommonFriendPairs(int num) {
+        TopPairs top = new TopPairs(Math.max(num, 0));
+        int vertices = ids.length;
+        int[] counts = new int[vertices];
+        int[] touched = new int[vertices];
+        for (int u = 0; u < vertices && num > 0; u++) {
+            // Count the paths u - c - w for every w > u; counts[w] ends up being the number of common friends of u and w
+            int touchedCount = 0;
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int c = neighbors[i];
+                int j = firstGreater(c, u);
+                for (; j < offsets[c + 1]; j++) {
+                    int w = neighbors[j];
+                    if (counts[w]++ == 0) {
+                        touched[touchedCount++] = w;
+                    }
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                int w = touched[t];
+                if (top.admits(counts[w]) && !adjacent(u, w)) {
+                    top.offer(counts[w], ids[u], ids[w]);
+                }
+                counts[w] = 0;
+            }
+        }
+        top.finish();
+        return top;
+    }
+
+    // Whether vertices <u> and <w> are adjacent (binary search in the shorter list)
+    private boolean adjacent(int u, int w) {
+        if (degree(u) > degree(w)) {
+            int swap = u;
+            u = w;
+            w = swap;
+        }
+        return Arrays.binarySearch(neighbors, offsets[u], offsets[u + 1], w) >= 0;
+    }
+
+    // The position of the first neighbor of <vertex> that is greater than <bound>
+    private int firstGreater(int vertex, int bound) {
+        int lo = offsets[vertex];
+        int hi = offsets[vertex + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (neighbors[mid] <= bound) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Member Variables
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private final long[] ids;
+    private final int[] offsets;
+    private final int[] neighbors;
+}
@@ -0,0 +1,195 @@
+package project2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/*
+    The IdRows class is a growable table of rows of <columns> longs, such as the (photo, tagged
+    user) IDs a ranking statement returns. Rows are decoded straight from a ResultSet into one
+    primitive array, one after another, so collecting them allocates nothing per row, groups
+    are found by comparing longs, and the distinct values of a column can be handed to a batched
+    lookup that builds each result object only once.
+*/
+final class IdRows {
+    // [Constructor]
+    // REQUIRES: <columns> > 0
+    // EFFECTS: creates an empty table of rows of <columns> longs
+    IdRows(int columns) {
+        this.columns = columns;
+        values = new long[columns * 16];
+    }
+
+    // MODIFIES: this
+    // REQUIRES: the first <columns> columns of the current row of <rst> are numeric
+    // EFFECTS: appends those columns of the current row of <rst>; a NULL is read as 0
+    void addRow(ResultSet rst) throws SQLException {
+        if (values.length < (size + 1) * columns) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        int offset = size * columns;
+        for (int column = 0; column < columns; column++) {
+            values[offset + column] = rst.getLong(column + 1);
+        }
+        size++;
+    }
+
+    // MODIFIES: this
+    // REQUIRES: the first <columns> columns of the current row of <rst> are numeric
+    // EFFECTS: appends those columns of the current row of <rst>, reading a NULL as <nullValue>
+    void addRow(ResultSet rst, long nullValue) throws SQLException {
+        if (values.length < (size + 1) * columns) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        int offset = size * columns;
+        for (int column = 0; column < columns; column++) {
+            long value = rst.getLong(column + 1);
+            values[offset + column] = rst.wasNull() ? nullValue : value;
+        }
+        size++;
+    }
+
+    // MODIFIES: this
+    // REQUIRES: <other> has as many columns as this table
+    // EFFECTS: appends every row of <other>
+    void addAll(IdRows other) {
+        if (values.length < (size + other.size) * columns) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, (size + other.size) * columns));
+        }
+        System.arraycopy(other.values, 0, values, size * columns, other.size * columns);
+        size += other.size;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sorts the rows by their first column, then by their second, and so on; the rows
+    //          are swapped in place, so sorting boxes nothing and copies nothing
+    void sort() {
+        sort(0, size - 1, new long[columns]);
+    }
+
+    // The number of rows
+    int size() {
+        return size;
+    }
+
+    // REQUIRES: 0 <= <row> < size() and 0 <= <column> < the number of columns
+    long get(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    // EFFECTS: returns true if <row> and the row before it hold the same values in the first
+    //          <prefix> columns, i.e. if <row> continues the group its predecessor started
+    boolean sameGroup(int row, int prefix) {
+        if (row == 0) {
+            return false;
+        }
+        for (int column = 0; column < prefix; column++) {
+            if (get(row, column) != get(row - 1, column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // EFFECTS: returns the distinct values of the given <columns>, in order of first appearance
+    Set<Long> distinct(int... columns) {
+        Set<Long> ids = new LinkedHashSet<Long>();
+        for (int row = 0; row < size; row++) {
+            for (int column : columns) {
+                ids.add(get(row, column));
+            }
+        }
+        return ids;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sorts rows <low> through <high> by quicksort on a median-of-three pivot, which is
+    //          copied into <pivot>; recurses into the smaller part only, so the depth stays
+    //          logarithmic, and leaves short ranges to an insertion sort
+    private void sort(int low, int high, long[] pivot) {
+        while (high - low > INSERTION_SORT_ROWS) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, low) < 0) {
+                swap(middle, low);
+            }
+            if (compare(high, low) < 0) {
+                swap(high, low);
+            }
+            if (compare(high, middle) < 0) {
+                swap(high, middle);
+            }
+            System.arraycopy(values, middle * columns, pivot, 0, columns);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(i, pivot) < 0) {
+                    i++;
+                }
+                while (compare(j, pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (j - low < high - i) {
+                sort(low, j, pivot);
+                low = i;
+            }
+            else {
+                sort(i, high, pivot);
+                high = j;
+            }
+        }
+        for (int row = low + 1; row <= high; row++) {
+            for (int j = row; j > low && compare(j - 1, j) > 0; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    // EFFECTS: compares rows <a> and <b> column by column
+    private int compare(int a, int b) {
+        for (int column = 0; column < columns; column++) {
+            int c = Long.compare(get(a, column), get(b, column));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    // EFFECTS: compares row <row> with the row held in <pivot>, column by column
+    private int compare(int row, long[] pivot) {
+        for (int column = 0; column < columns; column++) {
+            int c = Long.compare(get(row, column), pivot[column]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: exchanges rows <a> and <b>
+    private void swap(int a, int b) {
+        int offsetA = a * columns;
+        int offsetB = b * columns;
+        for (int column = 0; column < columns; column++) {
+            long value = values[offsetA + column];
+            values[offsetA + column] = values[offsetB + column];
+            values[offsetB + column] = value;
+        }
+    }
+
+    // Member Variables
+    private static final int INSERTION_SORT_ROWS = 16;
+
+    private final int columns;
+    private long[] values;
+    private int size;
+}
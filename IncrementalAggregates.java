@@ -0,0 +1,244 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    The IncrementalAggregates class keeps the two aggregates behind Query 0 and Query 7 in memory
+    and up to date, so that neither query has to group a whole table:
+
+        birth months    the number of users born in each month (users without a month are not
+                        counted)
+        event states    the number of events held in each state, found through the city of
+                        each event (events without a city, or in a city without a state, are
+                        not counted)
+
+    The aggregates are loaded once with grouped scans and then maintained from deltas: whoever
+    inserts or deletes Users, Events or Cities rows reports it through the *Added and *Removed
+    methods (an update is a removal of the old row followed by an addition of the new one). Each
+    delta costs O(log #months) or O(log #states), and each read O(#months) or O(#states).
+
+    Every method is synchronized; a caller that reads several values and needs them to agree
+    with each other holds the lock of this object while reading them.
+*/
+public final class IncrementalAggregates {
+    // EFFECTS: loads the aggregates from the given tables through <runner>
+    static IncrementalAggregates load(StatementRunner runner, String usersTable, String eventsTable, String citiesTable) throws SQLException {
+        return load(Collections.singletonList(runner), usersTable, eventsTable, citiesTable);
+    }
+
+    // REQUIRES: <runners> is not empty; the databases of their connections split the rows of
+    //           <usersTable> and <eventsTable> between them and each hold the whole <citiesTable>,
+    //           as the shards of a ShardedFakebookOracle do
+    // EFFECTS: loads the aggregates of all the databases together
+    static IncrementalAggregates load(List<StatementRunner> runners, String usersTable, String eventsTable, String citiesTable) throws SQLException {
+        IncrementalAggregates aggregates = new IncrementalAggregates();
+        StatementRunner first = runners.get(0);
+        try (PreparedStatement stmt = first.connection().prepareStatement(
+                "select city_id, state_name from " + citiesTable,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rst = first.execute(stmt, LOAD_FETCH_SIZE)) {
+            int rows = 0;
+            while (rst.next()) {
+                if (++rows % LOAD_FETCH_SIZE == 0) {
+                    first.checkCancelled();
+                }
+                aggregates.cityStates.put(rst.getLong(1), rst.getString(2));
+            }
+            first.fetched(rows);
+        }
+        for (StatementRunner runner : runners) {
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select month_of_birth, count(*) from " + usersTable + " where month_of_birth is not null group by month_of_birth",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    aggregates.monthCounts.merge(rst.getInt(1), rst.getLong(2), Long::sum);
+                    aggregates.usersWithMonth += rst.getLong(2);
+                }
+                runner.fetched(rows);
+            }
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select event_city_id, count(*) from " + eventsTable + " where event_city_id is not null group by event_city_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                int rows = 0;
+                while (rst.next()) {
+                    if (++rows % LOAD_FETCH_SIZE == 0) {
+                        runner.checkCancelled();
+                    }
+                    long cityId = rst.getLong(1);
+                    long events = rst.getLong(2);
+                    aggregates.cityEvents.merge(cityId, events, Long::sum);
+                    aggregates.addToState(aggregates.cityStates.get(cityId), events);
+                }
+                runner.fetched(rows);
+            }
+        }
+        return aggregates;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts a new user born in <monthOfBirth> (which may be null)
+    public synchronized void userAdded(Integer monthOfBirth) {
+        if (monthOfBirth != null) {
+            monthCounts.merge(monthOfBirth, 1L, Long::sum);
+            usersWithMonth++;
+        }
+    }
+
+    // REQUIRES: a user born in <monthOfBirth> is counted
+    // MODIFIES: this
+    // EFFECTS: stops counting a deleted user born in <monthOfBirth> (which may be null)
+    public synchronized void userRemoved(Integer monthOfBirth) {
+        if (monthOfBirth == null) {
+            return;
+        }
+        Long count = monthCounts.get(monthOfBirth);
+        if (count == null) {
+            throw new IllegalArgumentException("no user born in month " + monthOfBirth + " to remove");
+        }
+        if (count == 1) {
+            monthCounts.remove(monthOfBirth);
+        }
+        else {
+            monthCounts.put(monthOfBirth, count - 1);
+        }
+        usersWithMonth--;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts a new event held in city <cityId> (which may be null)
+    public synchronized void eventAdded(Long cityId) {
+        if (cityId != null) {
+            cityEvents.merge(cityId, 1L, Long::sum);
+            addToState(cityStates.get(cityId), 1);
+        }
+    }
+
+    // REQUIRES: an event held in city <cityId> is counted
+    // MODIFIES: this
+    // EFFECTS: stops counting a deleted event held in city <cityId> (which may be null)
+    public synchronized void eventRemoved(Long cityId) {
+        if (cityId == null) {
+            return;
+        }
+        Long count = cityEvents.get(cityId);
+        if (count == null) {
+            throw new IllegalArgumentException("no event in city " + cityId + " to remove");
+        }
+        if (count == 1) {
+            cityEvents.remove(cityId);
+        }
+        else {
+            cityEvents.put(cityId, count - 1);
+        }
+        addToState(cityStates.get(cityId), -1);
+    }
+
+    // REQUIRES: no city with <cityId> is counted
+    // MODIFIES: this
+    // EFFECTS: adds a city, counting the events already held there towards <stateName>
+    public synchronized void cityAdded(long cityId, String stateName) {
+        if (cityStates.containsKey(cityId)) {
+            throw new IllegalArgumentException("city " + cityId + " already exists");
+        }
+        cityStates.put(cityId, stateName);
+        addToState(stateName, cityEvents.getOrDefault(cityId, 0L));
+    }
+
+    // REQUIRES: the city with <cityId> is counted
+    // MODIFIES: this
+    // EFFECTS: removes a city; events still held there are no longer counted towards any state
+    public synchronized void cityRemoved(long cityId) {
+        if (!cityStates.containsKey(cityId)) {
+            throw new IllegalArgumentException("no city " + cityId + " to remove");
+        }
+        addToState(cityStates.remove(cityId), -cityEvents.getOrDefault(cityId, 0L));
+    }
+
+    // The number of users with a birth month
+    public synchronized long birthMonthTotal() {
+        return usersWithMonth;
+    }
+
+    // EFFECTS: returns the month in which the most users were born, the earliest such month on a
+    //          tie, or 0 if no user has a birth month
+    public synchronized int mostPopularBirthMonth() {
+        int month = 0;
+        long most = 0;
+        for (Map.Entry<Integer, Long> entry : monthCounts.entrySet()) {
+            if (entry.getValue() > most) {
+                most = entry.getValue();
+                month = entry.getKey();
+            }
+        }
+        return month;
+    }
+
+    // EFFECTS: returns the month in which the fewest (but at least one) users were born, the
+    //          latest such month on a tie, or 0 if no user has a birth month
+    public synchronized int leastPopularBirthMonth() {
+        int month = 0;
+        long least = Long.MAX_VALUE;
+        for (Map.Entry<Integer, Long> entry : monthCounts.entrySet()) {
+            if (entry.getValue() <= least) {
+                least = entry.getValue();
+                month = entry.getKey();
+            }
+        }
+        return month;
+    }
+
+    // EFFECTS: returns the largest number of events held in one state, or -1 if no event is
+    //          held in any state
+    public synchronized long mostEventsInAState() {
+        long most = -1;
+        for (long events : stateCounts.values()) {
+            most = Math.max(most, events);
+        }
+        return most;
+    }
+
+    // EFFECTS: returns the states in which mostEventsInAState() events are held, sorted by name
+    public synchronized List<String> statesWithMostEvents() {
+        long most = mostEventsInAState();
+        List<String> states = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : stateCounts.entrySet()) {
+            if (entry.getValue() == most) {
+                states.add(entry.getKey());
+            }
+        }
+        return states;
+    }
+
+    private void addToState(String stateName, long events) {
+        if (stateName == null || events == 0) {
+            return;
+        }
+        long count = stateCounts.getOrDefault(stateName, 0L) + events;
+        if (count == 0) {
+            stateCounts.remove(stateName);
+        }
+        else {
+            stateCounts.put(stateName, count);
+        }
+    }
+
+    // Member Variables
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private final TreeMap<Integer, Long> monthCounts = new TreeMap<Integer, Long>();
+    private long usersWithMonth = 0;
+    private final Map<Long, String> cityStates = new HashMap<Long, String>();
+    private final Map<Long, Long> cityEvents = new HashMap<Long, Long>();
+    private final TreeMap<String, Long> stateCounts = new TreeMap<String, Long>();
+}
@@ -0,0 +1,81 @@
+package project2;
+
+import java.sql.SQLException;
+
+/*
+    The InstrumentedFakebookOracle class measures every query answered by another oracle
+    (<delegate>) into a QueryMetrics: latency, allocation and, when <delegate> is a
+    StudentFakebookOracle, the execute / read / client split, rows read and round trips. Answers
+    and errors are passed through unchanged.
+
+    USAGE:
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.registerMBeans();
+        metrics.startReporting(1, TimeUnit.MINUTES, System.err::println);
+        FakebookOracle oracle = new InstrumentedFakebookOracle(new StudentFakebookOracle(connection), metrics);
+*/
+public final class InstrumentedFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    public InstrumentedFakebookOracle(FakebookOracle delegate, QueryMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public QueryMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return metrics.measure(QueryId.MONTH_OF_BIRTH_INFO, () -> delegate.findMonthOfBirthInfo());
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return metrics.measure(QueryId.NAME_INFO, () -> delegate.findNameInfo());
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return metrics.measure(QueryId.LONELY_USERS, () -> delegate.lonelyUsers());
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return metrics.measure(QueryId.LIVE_AWAY_FROM_HOME, () -> delegate.liveAwayFromHome());
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return metrics.measure(QueryId.PHOTOS_WITH_MOST_TAGS, () -> delegate.findPhotosWithMostTags(num));
+    }
+
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        return metrics.measure(QueryId.MATCH_MAKER, () -> delegate.matchMaker(num, yearDiff));
+    }
+
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        return metrics.measure(QueryId.SUGGEST_FRIENDS, () -> delegate.suggestFriends(num));
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return metrics.measure(QueryId.EVENT_STATES, () -> delegate.findEventStates());
+    }
+
+    @Override
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        return metrics.measure(QueryId.AGE_INFO, () -> delegate.findAgeInfo(userID));
+    }
+
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return metrics.measure(QueryId.POTENTIAL_SIBLINGS, () -> delegate.findPotentialSiblings());
+    }
+
+    // Member Variables
+    private final FakebookOracle delegate;
+    private final QueryMetrics metrics;
+}
@@ -0,0 +1,103 @@
+package project2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The LatencyHistogram class records durations in nanoseconds into log-linear buckets: values
+    below 64 get a bucket each, and every power-of-two range above that is split into 32 equal
+    buckets, so a reported percentile is within about 3% of the true value. Durations of an hour
+    or more all fall into the last bucket.
+
+    Recording is lock-free and allocation-free (one atomic increment per value), so histograms can
+    stay enabled in production; reads may observe a recording in progress.
+*/
+public final class LatencyHistogram {
+    // MODIFIES: this
+    // EFFECTS: records one duration of <nanos> nanoseconds; negative durations count as 0
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    public double meanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    // REQUIRES: 0 <= <percentile> <= 100
+    // EFFECTS: returns the duration below which <percentile> percent of the recorded durations
+    //          fall, as the upper end of its bucket (but never above the largest duration), or 0
+    //          if nothing was recorded
+    public long percentileNanos(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every recorded duration
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            buckets.set(bucket, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    // EFFECTS: returns the bucket of <value>
+    static int bucketOf(long value) {
+        return Math.min(unboundedBucketOf(value), BUCKETS - 1);
+    }
+
+    private static int unboundedBucketOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;   // value >>> shift is in [32, 64)
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // EFFECTS: returns the largest value that falls into <bucket>
+    static long highestValueOf(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    // Member Variables
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;                // 32 buckets per power of two
+    private static final int LINEAR = 2 * SUB_BUCKETS;                          // values below 64 are exact
+    private static final int BUCKETS = unboundedBucketOf(3600L * 1000000000L) + 1;   // up to one hour
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+}
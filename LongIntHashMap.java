@@ -0,0 +1,125 @@
+package project2;
+
+import java.util.Arrays;
+
+/*
+    The LongIntHashMap class maps long keys to int values using two parallel primitive arrays
+    addressed by open addressing with linear probing, so lookups neither box keys nor allocate.
+
+    Long.MIN_VALUE is reserved to mark empty slots and cannot be used as a key.
+*/
+final class LongIntHashMap {
+    // [Constructor]
+    // EFFECTS: creates an empty map sized for about <expectedKeys> keys
+    LongIntHashMap(int expectedKeys) {
+        int capacity = 16;
+        while (capacity < expectedKeys * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    // EFFECTS: returns the value of <key>, or <missing> if the key is absent
+    int get(long key, int missing) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the value of <key>; if the key is absent, it is first mapped to <value>
+    int putIfAbsent(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return value;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds <delta> to the value of <key> (absent keys count as 0) and returns the sum
+    int add(long key, int delta) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot] += delta;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return delta;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The number of slots; slot i is in use when isUsed(i)
+    int slots() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return keys[slot] != EMPTY;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Member Variables
+    private static final long EMPTY = Long.MIN_VALUE;
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+}
@@ -0,0 +1,146 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    The LongPairSet class is a set of unordered pairs of longs, such as friendships. A pair is
+    stored once as (smaller, larger) in two parallel primitive arrays addressed by open addressing
+    with linear probing, so a membership test is one hash computation and a few array reads, and
+    each pair costs about 32 bytes at the maximum load factor of one half.
+
+    Long.MIN_VALUE is reserved to mark empty slots and cannot be stored.
+*/
+final class LongPairSet {
+    // [Constructor]
+    // EFFECTS: creates an empty set sized for about <expectedPairs> pairs
+    LongPairSet(int expectedPairs) {
+        int capacity = 16;
+        while (capacity < expectedPairs * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        lows = new long[capacity];
+        highs = new long[capacity];
+        Arrays.fill(lows, EMPTY);
+    }
+
+    // EFFECTS: loads every (user1_id, user2_id) row of <friendsTable> through <runner> into a
+    //          new set
+    static LongPairSet loadFriends(StatementRunner runner, String friendsTable) throws SQLException {
+        return loadFriends(Collections.singletonList(runner), friendsTable);
+    }
+
+    // EFFECTS: loads the rows of <friendsTable> through each of <runners> into one new set
+    static LongPairSet loadFriends(List<StatementRunner> runners, String friendsTable) throws SQLException {
+        return load(runners, "select user1_id, user2_id from " + friendsTable);
+    }
+
+    // EFFECTS: loads the rows of <friendsTable> with user1_id < user2_id into a new set, so that
+    //          for a < b, contains(a, b) tells whether the row (user1_id = a, user2_id = b) itself
+    //          exists, as a one-directional "not exists" test in SQL would
+    static LongPairSet loadAscendingFriends(StatementRunner runner, String friendsTable) throws SQLException {
+        return loadAscendingFriends(Collections.singletonList(runner), friendsTable);
+    }
+
+    // EFFECTS: loads the rows of <friendsTable> with user1_id < user2_id through each of
+    //          <runners> into one new set
+    static LongPairSet loadAscendingFriends(List<StatementRunner> runners, String friendsTable) throws SQLException {
+        return load(runners, "select user1_id, user2_id from " + friendsTable + " where user1_id < user2_id");
+    }
+
+    private static LongPairSet load(List<StatementRunner> runners, String sql) throws SQLException {
+        LongPairSet friends = new LongPairSet(1024);
+        for (StatementRunner runner : runners) {
+            try (PreparedStatement stmt = runner.connection().prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        if (++rows % LOAD_FETCH_SIZE == 0) {
+                            runner.checkCancelled();
+                        }
+                        friends.add(rst.getLong(1), rst.getLong(2));
+                    }
+                    runner.fetched(rows);
+                }
+            }
+        }
+        return friends;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds the unordered pair {a, b}; returns false if it was already present
+    boolean add(long a, long b) {
+        long low = Math.min(a, b);
+        long high = Math.max(a, b);
+        int mask = lows.length - 1;
+        int slot = hash(low, high) & mask;
+        while (lows[slot] != EMPTY) {
+            if (lows[slot] == low && highs[slot] == high) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        lows[slot] = low;
+        highs[slot] = high;
+        if (++size * 2 > lows.length) {
+            grow();
+        }
+        return true;
+    }
+
+    // EFFECTS: returns true if the unordered pair {a, b} is in the set
+    boolean contains(long a, long b) {
+        long low = Math.min(a, b);
+        long high = Math.max(a, b);
+        int mask = lows.length - 1;
+        int slot = hash(low, high) & mask;
+        while (lows[slot] != EMPTY) {
+            if (lows[slot] == low && highs[slot] == high) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldLows = lows;
+        long[] oldHighs = highs;
+        lows = new long[oldLows.length * 2];
+        highs = new long[oldLows.length * 2];
+        Arrays.fill(lows, EMPTY);
+        int mask = lows.length - 1;
+        for (int i = 0; i < oldLows.length; i++) {
+            if (oldLows[i] != EMPTY) {
+                int slot = hash(oldLows[i], oldHighs[i]) & mask;
+                while (lows[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                lows[slot] = oldLows[i];
+                highs[slot] = oldHighs[i];
+            }
+        }
+    }
+
+    private static int hash(long low, long high) {
+        long h = low * 0x9E3779B97F4A7C15L + high;
+        h = (h ^ (h >>> 32)) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    // Member Variables
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private long[] lows;
+    private long[] highs;
+    private int size = 0;
+}
@@ -0,0 +1,159 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    The MatchFinder class ranks the candidate pairs of Query 5 (matchMaker) on the client instead
+    of joining Users x Users x Tags x Tags in the database:
+
+        1. The male users with a birth year are loaded in user ID order, so that a user is
+           identified by its index and index order is user ID order.
+        2. TagsTable is streamed photo by photo. For every two tags of the same photo whose
+           subjects are candidates with birth years at most <yearDiff> apart, the pair
+           (smaller index, larger index) is counted in a LongIntHashMap. Like the join, a photo
+           that tags a user twice counts every combination of the duplicate rows.
+        3. Pairs whose Friends row (user1_id, user2_id) exists are dropped, and the best <num>
+           of the rest, by count desc then user IDs asc, are kept in a TopPairs.
+
+    Only the winners' shared photos are looked up afterwards (see StudentFakebookOracle).
+*/
+final class MatchFinder {
+    // [Constructor]
+    private MatchFinder(long[] ids, int[] years, LongPairSet friends) {
+        this.ids = ids;
+        this.years = years;
+        this.friends = friends;
+    }
+
+    // EFFECTS: loads through <runner> the male users with a birth year and the friendships they
+    //          could be excluded by
+    static MatchFinder load(StatementRunner runner, String usersTable, String friendsTable) throws SQLException {
+        return load(Collections.singletonList(runner), usersTable, friendsTable);
+    }
+
+    // REQUIRES: the users of the connections of <runners> are disjoint user_id ranges listed in
+    //           ascending order
+    // EFFECTS: loads the candidates and friendships through every one of <runners> in turn
+    static MatchFinder load(List<StatementRunner> runners, String usersTable, String friendsTable) throws SQLException {
+        long[] ids = new long[1024];
+        int[] years = new int[1024];
+        int count = 0;
+        for (StatementRunner runner : runners) {
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select user_id, year_of_birth from " + usersTable + " where gender = 'male' and year_of_birth is not null order by user_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        if (++rows % LOAD_FETCH_SIZE == 0) {
+                            runner.checkCancelled();
+                        }
+                        if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                            years = Arrays.copyOf(years, count * 2);
+                        }
+                        ids[count] = rst.getLong(1);
+                        years[count] = rst.getInt(2);
+                        count++;
+                    }
+                    runner.fetched(rows);
+                }
+            }
+        }
+        LongPairSet friends = LongPairSet.loadAscendingFriends(runners, friendsTable);
+        return new MatchFinder(Arrays.copyOf(ids, count), Arrays.copyOf(years, count), friends);
+    }
+
+    // EFFECTS: returns the best <num> pairs of candidates tagged together in <tagsTable>, born at
+    //          most <yearDiff> years apart and not friends, finished best-first
+    TopPairs topPairs(StatementRunner runner, String tagsTable, int num, int yearDiff) throws SQLException {
+        return topPairs(Collections.singletonList(runner), tagsTable, num, yearDiff);
+    }
+
+    // REQUIRES: all the tags of a photo are on the connection of the same one of <runners>
+    // EFFECTS: ranks the pairs tagged together in <tagsTable> read through any of <runners>; a
+    //          pair tagged together on several connections is scored by its photos on all of them
+    TopPairs topPairs(List<StatementRunner> runners, String tagsTable, int num, int yearDiff) throws SQLException {
+        LongIntHashMap counts = new LongIntHashMap(1024);
+        int[] photo = new int[16];
+        for (StatementRunner runner : runners) {
+            int tagged = 0;
+            long currentPhoto = 0;
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select tag_photo_id, tag_subject_id from " + tagsTable + " where tag_photo_id is not null and tag_subject_id is not null order by tag_photo_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        if (++rows % LOAD_FETCH_SIZE == 0) {
+                            runner.checkCancelled();
+                        }
+                        long photoId = rst.getLong(1);
+                        if (tagged > 0 && photoId != currentPhoto) {
+                            countPairs(photo, tagged, yearDiff, counts);
+                            tagged = 0;
+                        }
+                        currentPhoto = photoId;
+                        int user = Arrays.binarySearch(ids, rst.getLong(2));
+                        if (user >= 0) {
+                            if (tagged == photo.length) {
+                                photo = Arrays.copyOf(photo, tagged * 2);
+                            }
+                            photo[tagged++] = user;
+                        }
+                    }
+                    runner.fetched(rows);
+                }
+            }
+            countPairs(photo, tagged, yearDiff, counts);
+        }
+
+        TopPairs top = new TopPairs(Math.max(num, 0));
+        for (int slot = 0; slot < counts.slots(); slot++) {
+            if (!counts.isUsed(slot)) {
+                continue;
+            }
+            int score = counts.valueAt(slot);
+            long key = counts.keyAt(slot);
+            long first = ids[(int) (key >>> 32)];
+            long second = ids[(int) key];
+            if (top.admits(score) && !friends.contains(first, second)) {
+                top.offer(score, first, second);
+            }
+        }
+        top.finish();
+        return top;
+    }
+
+    // REQUIRES: <userId> is a loaded candidate
+    // EFFECTS: returns the birth year of candidate <userId>
+    int yearOfBirth(long userId) {
+        return years[Arrays.binarySearch(ids, userId)];
+    }
+
+    // MODIFIES: counts
+    // EFFECTS: counts every pair of tags among the first <tagged> entries of <photo> whose
+    //          subjects are in ID order and close enough in age
+    private void countPairs(int[] photo, int tagged, int yearDiff, LongIntHashMap counts) {
+        for (int a = 0; a < tagged; a++) {
+            int i = photo[a];
+            for (int b = 0; b < tagged; b++) {
+                int j = photo[b];
+                if (i < j && (long) years[i] - years[j] <= yearDiff && (long) years[j] - years[i] <= yearDiff) {
+                    counts.add(((long) i << 32) | j, 1);
+                }
+            }
+        }
+    }
+
+    // Member Variables
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private final long[] ids;
+    private final int[] years;
+    private final LongPairSet friends;
+}
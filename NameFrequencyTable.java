@@ -0,0 +1,106 @@
+package project2;
+
+/*
+    The NameFrequencyTable class counts how often each string occurs. Keys and counts live in two
+    parallel arrays addressed by open addressing with linear probing, so counting a name that is
+    already present costs one hash lookup and no allocation, and the table holds one String
+    reference plus one int per distinct name.
+
+    A null name is counted separately, mirroring SQL's GROUP BY which places NULLs in a group of
+    their own.
+*/
+final class NameFrequencyTable {
+    // [Constructor]
+    // EFFECTS: creates an empty table sized for about <expectedNames> distinct names
+    NameFrequencyTable(int expectedNames) {
+        int capacity = 16;
+        while (capacity < expectedNames * 2) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        counts = new int[capacity];
+    }
+
+    // MODIFIES: this
+    // EFFECTS: increments the count of <name>
+    void add(String name) {
+        add(name, 1);
+    }
+
+    // MODIFIES: this
+    // REQUIRES: <count> > 0
+    // EFFECTS: adds <count> to the count of <name>, e.g. one group of a GROUP BY first_name
+    void add(String name, int count) {
+        if (name == null) {
+            nullCount += count;
+            return;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(name)) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = name;
+        counts[slot] = count;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    // The number of distinct non-null names
+    int size() {
+        return size;
+    }
+
+    // The number of slots; slot(i) is empty when name(i) is null
+    int slots() {
+        return keys.length;
+    }
+
+    String name(int slot) {
+        return keys[slot];
+    }
+
+    int count(int slot) {
+        return counts[slot];
+    }
+
+    // How many null names were added
+    int nullCount() {
+        return nullCount;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = mix(oldKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // Spreads the bits of String.hashCode() so that linear probing does not cluster
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Member Variables
+    private String[] keys;
+    private int[] counts;
+    private int size = 0;
+    private int nullCount = 0;
+}
@@ -0,0 +1,243 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    The PhotoTagCounts class keeps the number of tags on every photo in memory, ordered, so that
+    Query 4 (findPhotosWithMostTags) reads its top <num> photos instead of grouping TagsTable and
+    sorting every photo:
+
+        nodes       photo ID -> the photo's node, in a LongIntHashMap
+        tree        the photos with at least one tag, as a treap (a binary search tree balanced
+                    by random node priorities) ordered by tag count desc, then photo ID asc
+
+    Each node is a slot of the primitive arrays below (photo ID, tag count, children, priority),
+    so no photo ID is boxed. A photo keeps its node once it has one; untagging it down to zero
+    only takes the node out of the tree.
+
+    Reading the top <num> walks the tree in order from its leftmost node and stops after <num>
+    photos, so it costs O(log #photos + num) and lists tied photos by photo ID like
+    "order by tag_count desc, photo_id asc". Tagging or untagging a photo takes its node out of
+    the tree and puts it back with the new count, in O(log #photos).
+
+    Like IncrementalAggregates, the counts are loaded once with a grouped scan and then maintained
+    from deltas: whoever inserts or deletes Tags rows reports it through tagAdded and tagRemoved
+    (an update of tag_photo_id is a removal followed by an addition). Tags without a photo ID are
+    not counted. Every method is synchronized.
+*/
+public final class PhotoTagCounts {
+    // EFFECTS: loads through <runner> the tag count of every tagged photo in <tagsTable>
+    static PhotoTagCounts load(StatementRunner runner, String tagsTable) throws SQLException {
+        return load(Collections.singletonList(runner), tagsTable);
+    }
+
+    // EFFECTS: loads the tag count of every tagged photo in the <tagsTable> read through every one
+    //          of <runners>, adding up the counts of a photo found in several
+    static PhotoTagCounts load(List<StatementRunner> runners, String tagsTable) throws SQLException {
+        PhotoTagCounts counts = new PhotoTagCounts();
+        for (StatementRunner runner : runners) {
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select tag_photo_id, count(*) from " + tagsTable + " where tag_photo_id is not null group by tag_photo_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        if (++rows % LOAD_FETCH_SIZE == 0) {
+                            runner.checkCancelled();
+                        }
+                        counts.move(rst.getLong(1), rst.getInt(2));
+                    }
+                    runner.fetched(rows);
+                }
+            }
+        }
+        return counts;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts a new tag on photo <photoId>
+    public synchronized void tagAdded(long photoId) {
+        move(photoId, 1);
+    }
+
+    // REQUIRES: a tag on photo <photoId> is counted
+    // MODIFIES: this
+    // EFFECTS: stops counting a deleted tag on photo <photoId>
+    public synchronized void tagRemoved(long photoId) {
+        if (tagCount(photoId) == 0) {
+            throw new IllegalArgumentException("no tag on photo " + photoId + " to remove");
+        }
+        move(photoId, -1);
+    }
+
+    // The number of tags on photo <photoId>
+    public synchronized int tagCount(long photoId) {
+        int node = nodes.get(photoId, NIL);
+        return node == NIL ? 0 : counts[node];
+    }
+
+    // EFFECTS: returns the IDs of the (at most) <num> most tagged photos, most tagged first and
+    //          ties by photo ID
+    public synchronized long[] topPhotos(int num) {
+        long[] top = new long[Math.max(0, Math.min(num, photos))];
+        int[] path = new int[16];
+        int depth = 0;
+        int node = root;
+        int found = 0;
+        while (found < top.length) {
+            while (node != NIL) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, 2 * depth);
+                }
+                path[depth++] = node;
+                node = lefts[node];
+            }
+            node = path[--depth];
+            top[found++] = photoIds[node];
+            node = rights[node];
+        }
+        return top;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds <delta> to the tag count of <photoId> and moves its node to its new place
+    private void move(long photoId, int delta) {
+        int node = nodes.get(photoId, NIL);
+        if (node == NIL) {
+            node = newNode(photoId);
+        }
+        if (counts[node] > 0) {
+            root = remove(root, node);
+            photos--;
+        }
+        counts[node] += delta;
+        if (counts[node] > 0) {
+            lefts[node] = NIL;
+            rights[node] = NIL;
+            root = insert(root, node);
+            photos++;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns a new node for <photoId>, not in the tree and with no tags
+    private int newNode(long photoId) {
+        if (size == photoIds.length) {
+            int length = 2 * size;
+            photoIds = Arrays.copyOf(photoIds, length);
+            counts = Arrays.copyOf(counts, length);
+            lefts = Arrays.copyOf(lefts, length);
+            rights = Arrays.copyOf(rights, length);
+            priorities = Arrays.copyOf(priorities, length);
+        }
+        int node = size++;
+        photoIds[node] = photoId;
+        counts[node] = 0;
+        priorities[node] = priority(node);
+        nodes.putIfAbsent(photoId, node);
+        return node;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: inserts <node> into the subtree rooted at <tree> and returns the new root
+    private int insert(int tree, int node) {
+        if (tree == NIL) {
+            return node;
+        }
+        if (before(node, tree)) {
+            lefts[tree] = insert(lefts[tree], node);
+            if (priorities[lefts[tree]] > priorities[tree]) {
+                return rotateRight(tree);
+            }
+        }
+        else {
+            rights[tree] = insert(rights[tree], node);
+            if (priorities[rights[tree]] > priorities[tree]) {
+                return rotateLeft(tree);
+            }
+        }
+        return tree;
+    }
+
+    // REQUIRES: <node> is in the subtree rooted at <tree>
+    // MODIFIES: this
+    // EFFECTS: removes <node> from the subtree rooted at <tree> and returns the new root
+    private int remove(int tree, int node) {
+        if (tree == node) {
+            return merge(lefts[node], rights[node]);
+        }
+        if (before(node, tree)) {
+            lefts[tree] = remove(lefts[tree], node);
+        }
+        else {
+            rights[tree] = remove(rights[tree], node);
+        }
+        return tree;
+    }
+
+    // REQUIRES: every node of <left> comes before every node of <right>
+    // EFFECTS: joins the two subtrees and returns the root of the result
+    private int merge(int left, int right) {
+        if (left == NIL) {
+            return right;
+        }
+        if (right == NIL) {
+            return left;
+        }
+        if (priorities[left] > priorities[right]) {
+            rights[left] = merge(rights[left], right);
+            return left;
+        }
+        lefts[right] = merge(left, lefts[right]);
+        return right;
+    }
+
+    private int rotateRight(int node) {
+        int left = lefts[node];
+        lefts[node] = rights[left];
+        rights[left] = node;
+        return left;
+    }
+
+    private int rotateLeft(int node) {
+        int right = rights[node];
+        rights[node] = lefts[right];
+        lefts[right] = node;
+        return right;
+    }
+
+    // Whether node <a> ranks before node <b>: more tags, or as many tags and a smaller photo ID
+    private boolean before(int a, int b) {
+        if (counts[a] != counts[b]) {
+            return counts[a] > counts[b];
+        }
+        return photoIds[a] < photoIds[b];
+    }
+
+    // A well-mixed priority for <node>, so the tree stays balanced whatever order photos arrive in
+    private static int priority(int node) {
+        int h = node * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    // Member Variables
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private static final int NIL = -1;
+    private static final int INITIAL_NODES = 1024;
+    private final LongIntHashMap nodes = new LongIntHashMap(INITIAL_NODES);
+    private long[] photoIds = new long[INITIAL_NODES];
+    private int[] counts = new int[INITIAL_NODES];
+    private int[] lefts = new int[INITIAL_NODES];
+    private int[] rights = new int[INITIAL_NODES];
+    private int[] priorities = new int[INITIAL_NODES];
+    private int size = 0;       // the number of nodes, in the tree or not
+    private int root = NIL;
+    private int photos = 0;     // the number of photos with at least one tag, i.e. in the tree
+}
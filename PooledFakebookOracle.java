@@ -0,0 +1,347 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import javax.sql.DataSource;
+
+/*
+    The PooledFakebookOracle class answers FakebookOracle queries on connections borrowed from a
+    connection pool (<dataSource>), one connection per query, so that independent queries can
+    run at the same time. Each query is evaluated by a StudentFakebookOracle built on the borrowed
+    connection, and the connection goes back to the pool as soon as the query returns. Those
+    oracles all share one FakebookOracleState, so the observed fetch sizes and the tables loaded by
+    the in-memory engines outlive the query that created them.
+
+    runAll evaluates a set of QueryCalls concurrently on the caller's ExecutorService, with at
+    most <maxConcurrency> queries (and therefore connections) in flight at once, and reports each
+    query's answer together with its timing (see QueryResults). Any executor works: a fixed
+    thread pool, or on Java 21 and later Executors.newVirtualThreadPerTaskExecutor().
+
+    Errors behave exactly as with StudentFakebookOracle: a query whose SQL fails prints the error
+    on System.err and answers with the same sentinel (for example BirthMonthInfo(-1, -1, -1) or an
+    empty list). A connection that cannot be borrowed is reported and answered the same way.
+
+    liveAwayFromHome and the SQL engine of findPotentialSiblings can also be split into user_id
+    ranges (FakebookOracleConfig.setPartitions), each range scanned on its own connection on the
+    executor. The calling thread scans any range no executor thread has picked up yet, so a
+    partitioned query started from runAll cannot starve a bounded pool; it does need up to
+    <partitions> connections of its own. A failed range fails the whole query with its sentinel.
+
+    The statements a query prepares are closed before its connection goes back to the pool. To
+    keep them parsed from one borrower to the next, enable the statement cache of the pool or the
+    driver (see FakebookOracleState).
+*/
+public final class PooledFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <maxConcurrency> >= 1, and the pool can hand out that many connections
+    public PooledFakebookOracle(DataSource dataSource, ExecutorService executor, int maxConcurrency) {
+        this(dataSource, executor, maxConcurrency, FakebookOracleConfig.fromSystemProperties());
+    }
+
+    // [Constructor]
+    // REQUIRES: <maxConcurrency> >= 1, and the pool can hand out that many connections
+    // EFFECTS: evaluates each query with the engine selected for it in <config>
+    public PooledFakebookOracle(DataSource dataSource, ExecutorService executor, int maxConcurrency, FakebookOracleConfig config) {
+        this(dataSource, executor, maxConcurrency, new FakebookOracleState(config));
+    }
+
+    // [Constructor]
+    // REQUIRES: <maxConcurrency> >= 1, the pool can hand out that many connections, and <state>
+    //           belongs to the database behind <dataSource>
+    // EFFECTS: evaluates each query as configured by <state>, on oracles sharing <state>
+    public PooledFakebookOracle(DataSource dataSource, ExecutorService executor, int maxConcurrency, FakebookOracleState state) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.state = state;
+        this.config = state.config();
+    }
+
+    // The state shared by the oracles this oracle evaluates its queries on
+    public FakebookOracleState state() {
+        return state;
+    }
+
+    // EFFECTS: evaluates every call in <calls> (each distinct call once), running up to
+    //          maxConcurrency of them at a time, and returns their answers in the order given;
+    //          an unchecked exception thrown by a query is rethrown once all calls have finished
+    public QueryResults runAll(Collection<QueryCall> calls) throws InterruptedException {
+        List<QueryCall> distinct = new ArrayList<QueryCall>(new LinkedHashSet<QueryCall>(calls));
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+        Object[] answers = new Object[distinct.size()];
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < distinct.size(); i++) {
+                int index = i;
+                QueryCall call = distinct.get(i);
+                permits.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            long begin = System.nanoTime();
+                            answers[index] = call.invoke(this);
+                            return new long[] { begin - start, System.nanoTime() - begin };
+                        }
+                        finally {
+                            permits.release();
+                        }
+                    }));
+                }
+                catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            long[] started = new long[distinct.size()];
+            long[] elapsed = new long[distinct.size()];
+            RuntimeException failure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    long[] timing = futures.get(i).get();
+                    started[i] = timing[0];
+                    elapsed[i] = timing[1];
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new QueryResults(distinct, answers, started, elapsed, System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            for (Future<long[]> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    // Query 0
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() {
+        try {
+            return borrow(oracle -> oracle.findMonthOfBirthInfo());
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new BirthMonthInfo(-1, -1, -1);
+        }
+    }
+
+    // Query 1
+    @Override
+    public FirstNameInfo findNameInfo() {
+        try {
+            return borrow(oracle -> oracle.findNameInfo());
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FirstNameInfo();
+        }
+    }
+
+    // Query 2
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() {
+        try {
+            return borrow(oracle -> oracle.lonelyUsers());
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<UserInfo>(", ");
+        }
+    }
+
+    // Query 3
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() {
+        try {
+            int partitions = config.partitions(QueryId.LIVE_AWAY_FROM_HOME);
+            if (partitions > 1) {
+                return partitioned(QueryId.LIVE_AWAY_FROM_HOME, partitions, ", ", (oracle, from, to) -> oracle.liveAwayFromHome(from, to));
+            }
+            return borrow(oracle -> oracle.liveAwayFromHome());
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<UserInfo>(", ");
+        }
+    }
+
+    // Query 4
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) {
+        try {
+            return borrow(oracle -> oracle.findPhotosWithMostTags(num));
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<TaggedPhotoInfo>("\n");
+        }
+    }
+
+    // Query 5
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) {
+        try {
+            return borrow(oracle -> oracle.matchMaker(num, yearDiff));
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<MatchPair>("\n");
+        }
+    }
+
+    // Query 6
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(int num) {
+        try {
+            return borrow(oracle -> oracle.suggestFriends(num));
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<UsersPair>("\n");
+        }
+    }
+
+    // Query 7
+    @Override
+    public EventStateInfo findEventStates() {
+        try {
+            return borrow(oracle -> oracle.findEventStates());
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new EventStateInfo(-1);
+        }
+    }
+
+    // Query 8
+    @Override
+    public AgeInfo findAgeInfo(long userID) {
+        try {
+            return borrow(oracle -> oracle.findAgeInfo(userID));
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+        }
+    }
+
+    // Query 9
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() {
+        try {
+            int partitions = config.partitions(QueryId.POTENTIAL_SIBLINGS);
+            if (partitions > 1 && config.engine(QueryId.POTENTIAL_SIBLINGS) == QueryEngine.SQL) {
+                return partitioned(QueryId.POTENTIAL_SIBLINGS, partitions, "\n", (oracle, from, to) -> oracle.findPotentialSiblings(from, to));
+            }
+            return borrow(oracle -> oracle.findPotentialSiblings());
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<SiblingInfo>("\n");
+        }
+    }
+
+    // One query evaluated on a borrowed connection
+    private interface Query<T> {
+        T run(StudentFakebookOracle oracle) throws SQLException;
+    }
+
+    // One user_id range of a partitioned query, evaluated on a borrowed connection
+    private interface RangeQuery<T> {
+        FakebookArrayList<T> run(StudentFakebookOracle oracle, long fromUserId, long toUserId) throws SQLException;
+    }
+
+    // EFFECTS: evaluates <query> as up to <partitions> user_id ranges, each on its own borrowed
+    //          connection, and returns their rows in range order. Each range comes back sorted
+    //          and the ranges are disjoint and ascending, so appending them in range order is the
+    //          k-way merge of the partitions and keeps the "order by user_id" of the query.
+    private <T> FakebookArrayList<T> partitioned(QueryId query, int partitions, String separator, RangeQuery<T> rangeQuery) throws SQLException {
+        long[] ranges = borrow(oracle -> oracle.userIdRanges(query, partitions));
+        List<FutureTask<FakebookArrayList<T>>> tasks = new ArrayList<FutureTask<FakebookArrayList<T>>>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            long from = ranges[i];
+            long to = ranges[i + 1];
+            tasks.add(new FutureTask<FakebookArrayList<T>>(() -> borrow(oracle -> rangeQuery.run(oracle, from, to))));
+        }
+        // The first range is always scanned here; the others run here too if the executor
+        // refuses them or has not started them by the time they are needed
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            }
+            catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+
+        FakebookArrayList<T> results = new FakebookArrayList<T>(separator);
+        try {
+            for (FutureTask<FakebookArrayList<T>> task : tasks) {
+                task.run();
+                for (T row : task.get()) {
+                    results.add(row);
+                }
+            }
+            return results;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while scanning the partitions of " + query.methodName(), e);
+        }
+        finally {
+            for (FutureTask<FakebookArrayList<T>> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    // EFFECTS: borrows a connection from the pool, evaluates <query> on it and returns the
+    //          connection, its statements closed, before returning the answer
+    private <T> T borrow(Query<T> query) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             StudentFakebookOracle oracle = new StudentFakebookOracle(connection, state)) {
+            return query.run(oracle);
+        }
+    }
+
+    // Member Variables
+    private final DataSource dataSource;
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final FakebookOracleState state;
+    private final FakebookOracleConfig config;
+}
@@ -0,0 +1,119 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/*
+    The QueryCall class describes one invocation of a FakebookOracle query: which query, and with
+    which arguments. It lets code that treats queries uniformly (benchmarks, executors, caches)
+    run a query without a switch over the ten method names of its own. Two QueryCalls are equal
+    when they name the same query with the same arguments.
+*/
+public final class QueryCall {
+    // [Constructor]
+    // REQUIRES: <args> holds exactly the arguments of the method behind <query>
+    private QueryCall(QueryId query, long... args) {
+        this.query = query;
+        this.args = args;
+    }
+
+    public static QueryCall monthOfBirthInfo() {
+        return new QueryCall(QueryId.MONTH_OF_BIRTH_INFO);
+    }
+
+    public static QueryCall nameInfo() {
+        return new QueryCall(QueryId.NAME_INFO);
+    }
+
+    public static QueryCall lonelyUsers() {
+        return new QueryCall(QueryId.LONELY_USERS);
+    }
+
+    public static QueryCall liveAwayFromHome() {
+        return new QueryCall(QueryId.LIVE_AWAY_FROM_HOME);
+    }
+
+    public static QueryCall photosWithMostTags(int num) {
+        return new QueryCall(QueryId.PHOTOS_WITH_MOST_TAGS, num);
+    }
+
+    public static QueryCall matchMaker(int num, int yearDiff) {
+        return new QueryCall(QueryId.MATCH_MAKER, num, yearDiff);
+    }
+
+    public static QueryCall suggestFriends(int num) {
+        return new QueryCall(QueryId.SUGGEST_FRIENDS, num);
+    }
+
+    public static QueryCall eventStates() {
+        return new QueryCall(QueryId.EVENT_STATES);
+    }
+
+    public static QueryCall ageInfo(long userID) {
+        return new QueryCall(QueryId.AGE_INFO, userID);
+    }
+
+    public static QueryCall potentialSiblings() {
+        return new QueryCall(QueryId.POTENTIAL_SIBLINGS);
+    }
+
+    // EFFECTS: returns the call of <query> with the given parameters; parameters a query does
+    //          not take are ignored
+    public static QueryCall of(QueryId query, int num, int yearDiff, long userID) {
+        switch (query) {
+            case PHOTOS_WITH_MOST_TAGS: return photosWithMostTags(num);
+            case MATCH_MAKER:           return matchMaker(num, yearDiff);
+            case SUGGEST_FRIENDS:       return suggestFriends(num);
+            case AGE_INFO:              return ageInfo(userID);
+            default:                    return new QueryCall(query);
+        }
+    }
+
+    public QueryId query() {
+        return query;
+    }
+
+    // EFFECTS: runs this call against <oracle> and returns whatever the query method returns
+    public Object invoke(FakebookOracle oracle) throws SQLException {
+        switch (query) {
+            case MONTH_OF_BIRTH_INFO:   return oracle.findMonthOfBirthInfo();
+            case NAME_INFO:             return oracle.findNameInfo();
+            case LONELY_USERS:          return oracle.lonelyUsers();
+            case LIVE_AWAY_FROM_HOME:   return oracle.liveAwayFromHome();
+            case PHOTOS_WITH_MOST_TAGS: return oracle.findPhotosWithMostTags((int) args[0]);
+            case MATCH_MAKER:           return oracle.matchMaker((int) args[0], (int) args[1]);
+            case SUGGEST_FRIENDS:       return oracle.suggestFriends((int) args[0]);
+            case EVENT_STATES:          return oracle.findEventStates();
+            case AGE_INFO:              return oracle.findAgeInfo(args[0]);
+            case POTENTIAL_SIBLINGS:    return oracle.findPotentialSiblings();
+            default:                    throw new IllegalStateException("unknown query " + query);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof QueryCall)) {
+            return false;
+        }
+        QueryCall call = (QueryCall) other;
+        return query == call.query && Arrays.equals(args, call.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * query.hashCode() + Arrays.hashCode(args);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(query.methodName()).append('(');
+        for (int i = 0; i < args.length; i++) {
+            text.append(i == 0 ? "" : ", ").append(args[i]);
+        }
+        return text.append(')').toString();
+    }
+
+    // Member Variables
+    private final QueryId query;
+    private final long[] args;
+}
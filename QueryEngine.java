@@ -0,0 +1,11 @@
+package project2;
+
+/*
+    The QueryEngine enum selects how a query is evaluated. SQL runs the query entirely inside
+    the database; IN_MEMORY pulls the relevant tables into compact client-side structures and
+    evaluates the query there. Queries without an in-memory implementation always use SQL.
+*/
+public enum QueryEngine {
+    SQL,
+    IN_MEMORY
+}
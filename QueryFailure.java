@@ -0,0 +1,61 @@
+package project2;
+
+import java.sql.SQLException;
+
+/*
+    The QueryFailure class tells a query that failed apart from one whose answer only looks like
+    a failure. The query methods of the oracles in this package answer a failed query with its
+    sentinel (for example BirthMonthInfo(-1, -1, -1) or an empty list), and an empty list or an
+    EventStateInfo(-1) can just as well be the real answer. So besides printing the error, every
+    query method reports it here, on the thread the query was called on, and checked() runs a
+    query and throws the SQLException behind its answer if there is one.
+
+    Failures are counted per thread rather than cleared, so a check around a call that checks its
+    own delegate (CachingFakebookOracle in front of PooledFakebookOracle) still sees the failure.
+    A query evaluated on another thread (AsyncFakebookOracle, PooledFakebookOracle.runAll) reports
+    its failure on that thread.
+*/
+public final class QueryFailure {
+    // One evaluation of a query
+    public interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    // EFFECTS: runs <query> and returns its answer, or throws the SQLException a query reported
+    //          on this thread while <query> ran
+    public static <T> T checked(Query<T> query) throws SQLException {
+        Failures failures = FAILURES.get();
+        long before = failures.count;
+        T answer = query.run();
+        if (failures.count != before) {
+            throw failures.last;
+        }
+        return answer;
+    }
+
+    // MODIFIES: the failures of this thread
+    // EFFECTS: prints <e> on System.err, as every query has always done, and records it as the
+    //          reason the query running on this thread answers with its sentinel
+    static void report(SQLException e) {
+        System.err.println(e.getMessage());
+        Failures failures = FAILURES.get();
+        failures.count++;
+        failures.last = e;
+    }
+
+    // The number of failures reported on this thread so far
+    static long count() {
+        return FAILURES.get().count;
+    }
+
+    /*
+        The Failures class holds the failures reported on one thread.
+    */
+    private static final class Failures {
+        private long count = 0;
+        private SQLException last;
+    }
+
+    // Member Variables
+    private static final ThreadLocal<Failures> FAILURES = ThreadLocal.withInitial(Failures::new);
+}
@@ -0,0 +1,40 @@
+package project2;
+
+/*
+    The QueryId enum names the ten queries answered by a FakebookOracle. It is used wherever
+    a setting, cache entry or measurement has to be attached to one specific query rather than
+    to the oracle as a whole.
+*/
+public enum QueryId {
+    MONTH_OF_BIRTH_INFO(0, "findMonthOfBirthInfo"),
+    NAME_INFO(1, "findNameInfo"),
+    LONELY_USERS(2, "lonelyUsers"),
+    LIVE_AWAY_FROM_HOME(3, "liveAwayFromHome"),
+    PHOTOS_WITH_MOST_TAGS(4, "findPhotosWithMostTags"),
+    MATCH_MAKER(5, "matchMaker"),
+    SUGGEST_FRIENDS(6, "suggestFriends"),
+    EVENT_STATES(7, "findEventStates"),
+    AGE_INFO(8, "findAgeInfo"),
+    POTENTIAL_SIBLINGS(9, "findPotentialSiblings");
+
+    // [Constructor]
+    // REQUIRES: <number> is the query number used in the StudentFakebookOracle comments
+    QueryId(int number, String methodName) {
+        this.number = number;
+        this.methodName = methodName;
+    }
+
+    // The query number (0 through 9)
+    public int number() {
+        return number;
+    }
+
+    // The name of the FakebookOracle method that answers this query
+    public String methodName() {
+        return methodName;
+    }
+
+    // Member Variables
+    private final int number;
+    private final String methodName;
+}
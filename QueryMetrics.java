@@ -0,0 +1,170 @@
+package project2;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+    The QueryMetrics class holds a QueryStats for each of the ten queries, filled by an
+    InstrumentedFakebookOracle. The stats can be published as MXBeans (one per query, named
+    "project2:type=QueryStats,query=<method name>") and reported periodically as a table.
+
+    While a call is measured, its thread carries a Call that StudentFakebookOracle adds statement
+    timings and row counts to; on threads without one those hooks cost a ThreadLocal read.
+*/
+public final class QueryMetrics implements AutoCloseable {
+    // [Constructor]
+    public QueryMetrics() {
+        for (QueryId query : QueryId.values()) {
+            stats.put(query, new QueryStats(query));
+        }
+    }
+
+    public QueryStats stats(QueryId query) {
+        return stats.get(query);
+    }
+
+    // One evaluation of a query
+    interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    // EFFECTS: runs <body> as a measured call of <query> and returns its answer
+    <T> T measure(QueryId query, Query<T> body) throws SQLException {
+        Call outer = CURRENT.get();
+        Call call = new Call();
+        CURRENT.set(call);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            return body.run();
+        }
+        finally {
+            long total = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            CURRENT.set(outer);
+            stats.get(query).record(total, call.executeNanos, call.readNanos, call.rows, call.roundTrips, allocatedBefore < 0 ? -1 : allocated);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: registers the stats of every query with the platform MBean server
+    public synchronized void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (QueryStats queryStats : stats.values()) {
+            ObjectName name = new ObjectName("project2:type=QueryStats,query=" + queryStats.getQuery());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(queryStats, name);
+            }
+        }
+        registered = true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: passes report() to <sink> every <period> <unit> on a daemon thread, until close()
+    public synchronized void startReporting(long period, TimeUnit unit, Consumer<String> sink) {
+        if (reporter == null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "fakebook-query-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        reporter.scheduleAtFixedRate(() -> sink.accept(report()), period, period, unit);
+    }
+
+    // EFFECTS: returns a table of the stats of every query called at least once
+    public String report() {
+        StringBuilder out = new StringBuilder(QueryStats.header());
+        for (QueryStats queryStats : stats.values()) {
+            if (queryStats.getCalls() > 0) {
+                out.append('\n').append(queryStats);
+            }
+        }
+        return out.toString();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops periodic reporting and unregisters the MBeans
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        if (registered) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (QueryStats queryStats : stats.values()) {
+                try {
+                    server.unregisterMBean(new ObjectName("project2:type=QueryStats,query=" + queryStats.getQuery()));
+                }
+                catch (JMException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+            registered = false;
+        }
+    }
+
+    // EFFECTS: returns the measured call running on this thread, or null
+    static Call current() {
+        return CURRENT.get();
+    }
+
+    /*
+        The Call class collects the statement-level numbers of one measured call.
+    */
+    static final class Call {
+        // MODIFIES: this
+        // EFFECTS: records an executeQuery() that took <nanos> and will fetch <fetchSize> rows
+        //          per round trip
+        void executed(long nanos, int fetchSize) {
+            executeNanos += nanos;
+            roundTrips++;
+            this.fetchSize = fetchSize;
+            fetchStart = System.nanoTime();
+        }
+
+        // MODIFIES: this
+        // EFFECTS: records that the result of the last execution has been read, <rows> rows;
+        //          rows of a statement executed elsewhere are counted but not timed
+        void fetched(int rows) {
+            this.rows += rows;
+            if (fetchStart != 0) {
+                readNanos += System.nanoTime() - fetchStart;
+                fetchStart = 0;
+                if (fetchSize > 0) {
+                    roundTrips += rows / fetchSize;
+                }
+            }
+        }
+
+        private long executeNanos = 0;
+        private long readNanos = 0;
+        private long rows = 0;
+        private long roundTrips = 0;
+        private int fetchSize = 0;
+        private long fetchStart = 0;
+    }
+
+    // EFFECTS: returns the bytes allocated so far by this thread, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        return THREADS instanceof com.sun.management.ThreadMXBean ? ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    // Member Variables
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<Call>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private final Map<QueryId, QueryStats> stats = new EnumMap<QueryId, QueryStats>(QueryId.class);
+    private ScheduledExecutorService reporter;
+    private boolean registered = false;
+}
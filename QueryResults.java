@@ -0,0 +1,85 @@
+package project2;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+    The QueryResults class holds the answers of a set of QueryCalls evaluated together by
+    PooledFakebookOracle.runAll, in the order the calls were given, along with how each call was
+    timed:
+
+        started     nanoseconds from the start of the batch until the call began running
+        elapsed     nanoseconds the call took, borrowing its connection included
+        wall        nanoseconds the whole batch took; with enough concurrency this is close to
+                    the slowest call instead of the sum of all of them
+*/
+public final class QueryResults {
+    // [Constructor]
+    // REQUIRES: <answers>, <started> and <elapsed> are parallel to <calls>
+    QueryResults(List<QueryCall> calls, Object[] answers, long[] started, long[] elapsed, long wallNanos) {
+        this.calls = Collections.unmodifiableList(calls);
+        this.answers = answers;
+        this.started = started;
+        this.elapsed = elapsed;
+        this.wallNanos = wallNanos;
+    }
+
+    public List<QueryCall> calls() {
+        return calls;
+    }
+
+    // REQUIRES: <call> is one of calls()
+    // EFFECTS: returns the answer of <call>, as returned by the corresponding FakebookOracle method
+    public Object result(QueryCall call) {
+        return answers[indexOf(call)];
+    }
+
+    // REQUIRES: <call> is one of calls()
+    public long startedNanos(QueryCall call) {
+        return started[indexOf(call)];
+    }
+
+    // REQUIRES: <call> is one of calls()
+    public long elapsedNanos(QueryCall call) {
+        return elapsed[indexOf(call)];
+    }
+
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    // EFFECTS: returns the sum of the calls' elapsed times, i.e. roughly what running them one
+    //          after another would have taken
+    public long totalNanos() {
+        long total = 0;
+        for (long nanos : elapsed) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    private int indexOf(QueryCall call) {
+        int index = calls.indexOf(call);
+        if (index < 0) {
+            throw new IllegalArgumentException(call + " was not part of this batch");
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < calls.size(); i++) {
+            out.append(String.format("%-32s started %9.2f ms  took %9.2f ms%n", calls.get(i), started[i] / 1e6, elapsed[i] / 1e6));
+        }
+        out.append(String.format("wall %.2f ms, sum of calls %.2f ms", wallNanos / 1e6, totalNanos() / 1e6));
+        return out.toString();
+    }
+
+    // Member Variables
+    private final List<QueryCall> calls;
+    private final Object[] answers;
+    private final long[] started;
+    private final long[] elapsed;
+    private final long wallNanos;
+}
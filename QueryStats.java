@@ -0,0 +1,162 @@
+package project2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The QueryStats class accumulates the metrics of every call of one query:
+
+        total       latency of the whole call
+        execute     time spent in executeQuery(), i.e. parsing, execution and the first fetch
+        read        time spent walking result sets: the further fetches plus decoding each row
+                    and turning it into objects, which happen interleaved and are not split
+        client      the rest, i.e. time outside the statement hooks: preparing statements
+                    missing from the statement cache, client-side computation and result
+                    assembly
+        rows        rows read from result sets
+        round trips executions plus the further fetches their row counts imply at the fetch size
+                    in effect, an estimate since drivers do not report actual round trips
+        allocation  bytes allocated by the calling thread during the call, also shown per row
+                    read, which is how row decoding costs compare across result sizes
+
+    The bulk loads of the in-memory engines run through the same hooks (see StatementRunner), so
+    they count as execute and read time, including whatever an engine does with each row as it
+    reads it.
+*/
+public final class QueryStats implements QueryStatsMXBean {
+    // [Constructor]
+    QueryStats(QueryId query) {
+        this.query = query;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records one call
+    void record(long totalNanos, long executeNanos, long readNanos, long rows, long roundTrips, long allocatedBytes) {
+        total.record(totalNanos);
+        execute.record(executeNanos);
+        read.record(readNanos);
+        client.record(totalNanos - executeNanos - readNanos);
+        this.rows.add(rows);
+        this.roundTrips.add(roundTrips);
+        if (allocatedBytes > 0) {
+            this.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    public LatencyHistogram total() {
+        return total;
+    }
+
+    public LatencyHistogram execute() {
+        return execute;
+    }
+
+    public LatencyHistogram read() {
+        return read;
+    }
+
+    public LatencyHistogram client() {
+        return client;
+    }
+
+    @Override
+    public String getQuery() {
+        return query.methodName();
+    }
+
+    @Override
+    public long getCalls() {
+        return total.count();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return total.meanNanos() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return total.percentileNanos(50) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return total.percentileNanos(99) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return total.maxNanos() / 1e6;
+    }
+
+    @Override
+    public double getExecuteP50Millis() {
+        return execute.percentileNanos(50) / 1e6;
+    }
+
+    @Override
+    public double getReadP50Millis() {
+        return read.percentileNanos(50) / 1e6;
+    }
+
+    @Override
+    public double getClientP50Millis() {
+        return client.percentileNanos(50) / 1e6;
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    @Override
+    public double getAllocatedBytesPerRow() {
+        long rows = getRows();
+        return rows == 0 ? 0.0 : (double) getAllocatedBytes() / rows;
+    }
+
+    @Override
+    public void reset() {
+        total.reset();
+        execute.reset();
+        read.reset();
+        client.reset();
+        rows.reset();
+        roundTrips.reset();
+        allocatedBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        long calls = Math.max(getCalls(), 1);
+        return String.format("%-24s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %10.2f %10.1f %8.1f %,14d %10.1f",
+            query.methodName(), getCalls(), getP50Millis(), getP99Millis(), getMaxMillis(),
+            getExecuteP50Millis(), getReadP50Millis(), getClientP50Millis(),
+            (double) getRows() / calls, (double) getRoundTrips() / calls, getAllocatedBytes() / calls,
+            getAllocatedBytesPerRow());
+    }
+
+    static String header() {
+        return String.format("%-24s %8s %9s %9s %9s %9s %9s %10s %10s %8s %14s %10s",
+            "query", "calls", "p50 ms", "p99 ms", "max ms", "exec p50", "read p50", "client p50", "rows/call", "trips", "alloc B/call", "B/row");
+    }
+
+    // Member Variables
+    private final QueryId query;
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram execute = new LatencyHistogram();
+    private final LatencyHistogram read = new LatencyHistogram();
+    private final LatencyHistogram client = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+}
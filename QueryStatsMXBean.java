@@ -0,0 +1,23 @@
+package project2;
+
+/*
+    The QueryStatsMXBean interface is the JMX view of the QueryStats of one query. Latencies are in
+    milliseconds; the execute, read and client parts of a call add up to its total (see
+    QueryStats for what each covers).
+*/
+public interface QueryStatsMXBean {
+    String getQuery();
+    long getCalls();
+    double getMeanMillis();
+    double getP50Millis();
+    double getP99Millis();
+    double getMaxMillis();
+    double getExecuteP50Millis();
+    double getReadP50Millis();
+    double getClientP50Millis();
+    long getRows();
+    long getRoundTrips();
+    long getAllocatedBytes();
+    double getAllocatedBytesPerRow();
+    void reset();
+}
@@ -0,0 +1,87 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+    The ResultSetStream class turns a query into a lazily fetched Stream. The statement is
+    forward-only and read-only, and rows are pulled from the database <fetchSize> at a time only
+    as the stream is consumed. So memory stays flat no matter how many rows the query returns.
+
+    The stream owns its own statement and result set. Both are released when the stream is
+    closed, so callers must consume it in a try-with-resources block. A SQLException raised
+    while fetching surfaces as an UncheckedSQLException. The statement runs through a
+    StatementRunner, so it carries the query's timeout and is cancelled with the oracle.
+*/
+final class ResultSetStream {
+    // Maps the current row of a result set to an object
+    interface RowMapper<T> {
+        T map(ResultSet rst) throws SQLException;
+    }
+
+    private ResultSetStream() {
+    }
+
+    // EFFECTS: executes <sql> through <runner> and returns its rows mapped by <mapper>; the rows
+    //          read are reported to <runner> when the stream is closed
+    static <T> Stream<T> of(StatementRunner runner, String sql, int fetchSize, RowMapper<T> mapper) throws SQLException {
+        PreparedStatement stmt = runner.connection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            ResultSet rst = runner.execute(stmt, fetchSize);
+            int[] rows = new int[1];
+            Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!rst.next()) {
+                            return false;
+                        }
+                        if (++rows[0] % fetchSize == 0) {
+                            runner.checkCancelled();
+                        }
+                        action.accept(mapper.map(rst));
+                        return true;
+                    }
+                    catch (SQLException e) {
+                        throw new UncheckedSQLException(e);
+                    }
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                runner.fetched(rows[0]);
+                close(stmt);
+            });
+        }
+        catch (SQLException | RuntimeException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    // EFFECTS: pushes every element of <rows> to <sink> and closes the stream, rethrowing a
+    //          fetch failure as the original SQLException
+    static <T> void drain(Stream<T> rows, Consumer<? super T> sink) throws SQLException {
+        try (Stream<T> stream = rows) {
+            stream.forEach(sink);
+        }
+        catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Closing the statement closes its result set as well
+    private static void close(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        }
+        catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+}
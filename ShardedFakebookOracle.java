@@ -0,0 +1,640 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+    The ShardedFakebookOracle class answers FakebookOracle queries over several databases
+    (shards), each holding one user_id range of the Fakebook tables and all laid out alike:
+
+        Users, User_Current_Cities, User_Hometown_Cities, Education
+                                the shard of the user
+        Albums, Photos, Tags    the shard of the album owner, tags included whatever user they
+                                tag
+        User_Events             the shard of the event creator
+        Friends                 the shards of both users, so a friendship between two shards is
+                                stored twice
+        Cities, Programs        every shard
+
+    Every query is scattered to all shards at once, on one StudentFakebookOracle per shard and
+    the caller's ExecutorService, and the partial answers are gathered as follows:
+
+        findMonthOfBirthInfo    month counts are summed, then the users of the chosen months
+                                are appended shard by shard
+        findNameInfo            first name counts are summed into one NameFrequencyTable
+        lonelyUsers,            each shard's sorted answer is exact for its own users, and the
+        liveAwayFromHome        answers are appended in shard order
+        findPhotosWithMostTags  the per-shard top <num> rankings are merged through a heap, and
+                                the winners' tags are named on whichever shard holds the users
+        findEventStates         event counts per state are summed
+        findAgeInfo             the friends and their birth dates are gathered from all shards
+                                and ranked here, with NULLs sorted as Oracle sorts them
+
+    When the config selects the in-memory engine for findMonthOfBirthInfo or findEventStates,
+    their counts come instead from the IncrementalAggregates of the oracle's FakebookOracleState,
+    and for findPhotosWithMostTags the winners come from its PhotoTagCounts. Both are loaded from
+    all shards at once and maintained from the deltas writers report to that state.
+
+    matchMaker, suggestFriends and findPotentialSiblings rank pairs of users who may live on
+    different shards, and a pair's score adds up over several shards, so no per-shard top <num>
+    can be merged. Those three run their in-memory engines (MatchFinder, FriendGraph,
+    SiblingFinder) loaded from all shards in turn; only the winners are looked up on the shards.
+    Their answers match the in-memory engines of StudentFakebookOracle, whatever engine <config>
+    selects. The FriendGraph is kept in the state.
+
+    Like StudentFakebookOracle, the oracle runs one query at a time, and a query whose SQL fails
+    on any shard prints the error on System.err and answers with the usual sentinel. The calling
+    thread scatters to the first shard itself, and to any shard no executor thread has picked
+    up yet, so queries cannot starve a bounded pool.
+*/
+public final class ShardedFakebookOracle extends FakebookOracle implements AutoCloseable {
+    // [Constructor]
+    // REQUIRES: <shards> is not empty and lists the shards in ascending user_id order
+    public ShardedFakebookOracle(List<Connection> shards, ExecutorService executor) {
+        this(shards, executor, FakebookOracleConfig.fromSystemProperties());
+    }
+
+    // [Constructor]
+    // REQUIRES: <shards> is not empty and lists the shards in ascending user_id order
+    // EFFECTS: queries every shard through a StudentFakebookOracle configured by <config>; the
+    //          connections stay owned by the caller
+    public ShardedFakebookOracle(List<Connection> shards, ExecutorService executor, FakebookOracleConfig config) {
+        this(shards, executor, new FakebookOracleState(config), true);
+    }
+
+    // [Constructor]
+    // REQUIRES: <shards> is not empty and lists the shards in ascending user_id order, and
+    //           <state> belongs to these shards together
+    // EFFECTS: queries every shard through a StudentFakebookOracle built on <state>, so the
+    //          statements prepared on each shard and the fetch sizes observed there are kept in
+    //          <state> too, as is what is loaded from all shards at once; the connections stay
+    //          owned by the caller
+    public ShardedFakebookOracle(List<Connection> shards, ExecutorService executor, FakebookOracleState state) {
+        this(shards, executor, state, false);
+    }
+
+    private ShardedFakebookOracle(List<Connection> shards, ExecutorService executor, FakebookOracleState state, boolean ownsState) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.executor = executor;
+        this.state = state;
+        this.ownsState = ownsState;
+        this.config = state.config();
+        for (Connection connection : shards) {
+            oracles.add(new StudentFakebookOracle(connection, state));
+        }
+    }
+
+    // The state holding what this oracle loads from all shards at once
+    public FakebookOracleState state() {
+        return state;
+    }
+
+    // Query 0
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() {
+        try {
+            int total = 0;
+            int mostMonth = 0;
+            int leastMonth = 0;
+            if (config.engine(QueryId.MONTH_OF_BIRTH_INFO) == QueryEngine.IN_MEMORY) {
+                IncrementalAggregates aggregates = state.aggregates(runners(QueryId.MONTH_OF_BIRTH_INFO));
+                synchronized (aggregates) {
+                    total = (int) aggregates.birthMonthTotal();
+                    mostMonth = aggregates.mostPopularBirthMonth();
+                    leastMonth = aggregates.leastPopularBirthMonth();
+                }
+            }
+            else {
+                SortedMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+                for (SortedMap<Integer, Integer> shardCounts : scatter(QueryId.MONTH_OF_BIRTH_INFO, shard -> shard.birthMonthCounts())) {
+                    for (Map.Entry<Integer, Integer> entry : shardCounts.entrySet()) {
+                        counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                    }
+                }
+
+                // Ties go to the earliest month for the most users and to the latest month for
+                // the fewest, as with "order by Birthed desc, Month_of_Birth asc"
+                int most = 0;
+                int least = Integer.MAX_VALUE;
+                for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+                    int count = entry.getValue();
+                    total += count;
+                    if (count > most) {
+                        most = count;
+                        mostMonth = entry.getKey();
+                    }
+                    if (count <= least) {
+                        least = count;
+                        leastMonth = entry.getKey();
+                    }
+                }
+            }
+
+            int mostPopular = mostMonth;
+            int leastPopular = leastMonth;
+            BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+            List<List<List<UserInfo>>> users = scatter(QueryId.MONTH_OF_BIRTH_INFO,
+                shard -> Arrays.asList(shard.usersBornIn(mostPopular), shard.usersBornIn(leastPopular)));
+            for (List<List<UserInfo>> shardUsers : users) {
+                for (UserInfo user : shardUsers.get(0)) {
+                    info.addMostPopularBirthMonthUser(user);
+                }
+            }
+            for (List<List<UserInfo>> shardUsers : users) {
+                for (UserInfo user : shardUsers.get(1)) {
+                    info.addLeastPopularBirthMonthUser(user);
+                }
+            }
+            return info;
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new BirthMonthInfo(-1, -1, -1);
+        }
+    }
+
+    // Query 1
+    @Override
+    public FirstNameInfo findNameInfo() {
+        try {
+            NameFrequencyTable names = new NameFrequencyTable(1024);
+            for (NameFrequencyTable shardNames : scatter(QueryId.NAME_INFO, shard -> shard.firstNameCounts())) {
+                for (int slot = 0; slot < shardNames.slots(); slot++) {
+                    if (shardNames.name(slot) != null) {
+                        names.add(shardNames.name(slot), shardNames.count(slot));
+                    }
+                }
+                if (shardNames.nullCount() > 0) {
+                    names.add(null, shardNames.nullCount());
+                }
+            }
+            return oracles.get(0).nameInfo(names);
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FirstNameInfo();
+        }
+    }
+
+    // Query 2
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() {
+        try {
+            return appended(scatter(QueryId.LONELY_USERS, shard -> {
+                FakebookArrayList<UserInfo> users = new FakebookArrayList<UserInfo>(", ");
+                shard.lonelyUsers(users::add);
+                return users;
+            }), ", ");
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<UserInfo>(", ");
+        }
+    }
+
+    // Query 3
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() {
+        try {
+            return appended(scatter(QueryId.LIVE_AWAY_FROM_HOME, shard -> {
+                FakebookArrayList<UserInfo> users = new FakebookArrayList<UserInfo>(", ");
+                shard.liveAwayFromHome(users::add);
+                return users;
+            }), ", ");
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new FakebookArrayList<UserInfo>(", ");
+        }
+    }
+
+    // Query 4
+    // -----------------------------------------------------------------------------------
+    // The winners are ranked by mostTaggedPhotos, or with the in-memory engine read off the
+    // PhotoTagCounts of the state, loaded once from all shards and maintained from the deltas
+    // writers report to the state. The winners' photos and tags are then read from the shards in
+    // one round, and the tagged users' names in another, since a photo can tag users of any shard.
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) {
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        try {
+            Set<Long> winners;
+            if (config.engine(QueryId.PHOTOS_WITH_MOST_TAGS) == QueryEngine.IN_MEMORY) {
+                winners = new TreeSet<Long>();
+                for (long photoId : state.tagCounts(runners(QueryId.PHOTOS_WITH_MOST_TAGS)).topPhotos(num)) {
+                    winners.add(photoId);
+                }
+            }
+            else {
+                winners = mostTaggedPhotos(num);
+            }
+
+            Map<Long, PhotoInfo> photos = photos(QueryId.PHOTOS_WITH_MOST_TAGS, winners);
+            IdRows tagged = new IdRows(2);
+            for (IdRows shardTags : scatter(QueryId.PHOTOS_WITH_MOST_TAGS, shard -> shard.taggedUsers(winners))) {
+                tagged.addAll(shardTags);
+            }
+            tagged.sort();
+            Map<Long, UserInfo> users = users(QueryId.PHOTOS_WITH_MOST_TAGS, tagged.distinct(1));
+
+            // Like the join of the single-database statement, a photo missing from PhotosTable or
+            // AlbumsTable and a tag of a user missing from every UsersTable are left out
+            TaggedPhotoInfo tp = null;
+            long tpPhotoId = 0;
+            for (int i = 0; i < tagged.size(); i++) {
+                PhotoInfo photo = photos.get(tagged.get(i, 0));
+                UserInfo user = users.get(tagged.get(i, 1));
+                if (photo == null || user == null) {
+                    continue;
+                }
+                if (tp == null || tagged.get(i, 0) != tpPhotoId) {
+                    tp = new TaggedPhotoInfo(photo);
+                    tpPhotoId = tagged.get(i, 0);
+                    results.add(tp);
+                }
+                tp.addTaggedUser(user);
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        return results;
+    }
+
+    // EFFECTS: returns the IDs of the <num> most tagged photos of all shards. Every shard ranks
+    //          its own photos, and a photo's tags all live on one shard, so the global top <num>
+    //          is the best <num> of the shards' top <num> lists. Each list is sorted by tag count
+    //          desc, photo ID asc; a heap holding the head of every list hands out the winners
+    //          best-first.
+    private Set<Long> mostTaggedPhotos(int num) throws SQLException {
+        List<IdRows> rankings = scatter(QueryId.PHOTOS_WITH_MOST_TAGS, shard -> shard.photoTagCounts(num));
+        PriorityQueue<int[]> heads = new PriorityQueue<int[]>((a, b) -> {
+            IdRows x = rankings.get(a[0]);
+            IdRows y = rankings.get(b[0]);
+            int c = Long.compare(y.get(b[1], 1), x.get(a[1], 1));
+            return c != 0 ? c : Long.compare(x.get(a[1], 0), y.get(b[1], 0));
+        });
+        for (int shard = 0; shard < rankings.size(); shard++) {
+            if (rankings.get(shard).size() > 0) {
+                heads.add(new int[] { shard, 0 });
+            }
+        }
+        Set<Long> winners = new TreeSet<Long>();
+        while (winners.size() < num && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            IdRows ranking = rankings.get(head[0]);
+            winners.add(ranking.get(head[1], 0));
+            if (++head[1] < ranking.size()) {
+                heads.add(head);
+            }
+        }
+        return winners;
+    }
+
+    // Query 5, ranked by a MatchFinder loaded from every shard; the shared photos of the winners
+    // are then read from the shards holding them
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        try {
+            List<StatementRunner> runners = runners(QueryId.MATCH_MAKER);
+            MatchFinder finder = MatchFinder.load(runners, UsersTable, FriendsTable);
+            TopPairs top = finder.topPairs(runners, TagsTable, num, yearDiff);
+            if (top.size() == 0) {
+                return results;
+            }
+            long[][] winners = new long[top.size()][];
+            for (int i = 0; i < top.size(); i++) {
+                winners[i] = new long[] { top.first(i), top.second(i) };
+            }
+
+            IdRows shared = new IdRows(3);
+            for (IdRows shardShared : scatter(QueryId.MATCH_MAKER, shard -> shard.sharedPhotos(winners))) {
+                shared.addAll(shardShared);
+            }
+            shared.sort();
+            Map<Long, UserInfo> users = users(QueryId.MATCH_MAKER, shared.distinct(0, 1));
+            Map<Long, PhotoInfo> photos = photos(QueryId.MATCH_MAKER, shared.distinct(2));
+            MatchPair mp = null;
+            for (int i = 0; i < shared.size(); i++) {
+                if (!shared.sameGroup(i, 2)) {
+                    long m1 = shared.get(i, 0);
+                    long m2 = shared.get(i, 1);
+                    mp = new MatchPair(user(m1, users), finder.yearOfBirth(m1), user(m2, users), finder.yearOfBirth(m2));
+                    results.add(mp);
+                }
+                mp.addSharedPhoto(photos.get(shared.get(i, 2)));
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        return results;
+    }
+
+    // Query 6, ranked over a FriendGraph of the Friends rows of every shard
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(int num) {
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        try {
+            FriendGraph graph = friendGraph();
+            TopPairs top = graph.topCommonFriendPairs(num);
+
+            long[][] common = new long[top.size()][];
+            Set<Long> userIds = new HashSet<Long>();
+            for (int i = 0; i < top.size(); i++) {
+                common[i] = graph.commonFriends(top.first(i), top.second(i));
+                userIds.add(top.first(i));
+                userIds.add(top.second(i));
+                for (long friend : common[i]) {
+                    userIds.add(friend);
+                }
+            }
+
+            Map<Long, UserInfo> users = users(QueryId.SUGGEST_FRIENDS, userIds);
+            for (int i = 0; i < top.size(); i++) {
+                UsersPair p = new UsersPair(user(top.first(i), users), user(top.second(i), users));
+                for (long friend : common[i]) {
+                    p.addSharedFriend(user(friend, users));
+                }
+                results.add(p);
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        return results;
+    }
+
+    // Query 7
+    @Override
+    public EventStateInfo findEventStates() {
+        try {
+            if (config.engine(QueryId.EVENT_STATES) == QueryEngine.IN_MEMORY) {
+                IncrementalAggregates aggregates = state.aggregates(runners(QueryId.EVENT_STATES));
+                synchronized (aggregates) {
+                    EventStateInfo info = new EventStateInfo((int) aggregates.mostEventsInAState());
+                    for (String stateName : aggregates.statesWithMostEvents()) {
+                        info.addState(stateName);
+                    }
+                    return info;
+                }
+            }
+
+            SortedMap<String, Integer> counts = new TreeMap<String, Integer>();
+            for (Map<String, Integer> shardCounts : scatter(QueryId.EVENT_STATES, shard -> shard.eventCountsByState())) {
+                for (Map.Entry<String, Integer> entry : shardCounts.entrySet()) {
+                    counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+            if (counts.isEmpty()) {
+                return new EventStateInfo(-1);
+            }
+
+            int most = 0;
+            for (int count : counts.values()) {
+                most = Math.max(most, count);
+            }
+            EventStateInfo info = new EventStateInfo(most);
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (entry.getValue() == most) {
+                    info.addState(entry.getKey());
+                }
+            }
+            return info;
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new EventStateInfo(-1);
+        }
+    }
+
+    // Query 8
+    // -----------------------------------------------------------------------------------
+    // The friends of <userID> are collected from every shard (the user's own shard holds them
+    // all, but any shard may be asked), their birth dates are read from the shards holding them,
+    // and the oldest and youngest are picked here in the order of the single-database statements:
+    // by birth date with NULLs last, then by user ID desc for the oldest and asc for the youngest.
+    @Override
+    public AgeInfo findAgeInfo(long userID) {
+        try {
+            Set<Long> friends = new HashSet<Long>();
+            for (Set<Long> shardFriends : scatter(QueryId.AGE_INFO, shard -> shard.friendIds(userID))) {
+                friends.addAll(shardFriends);
+            }
+            IdRows dates = new IdRows(4);
+            for (IdRows shardDates : scatter(QueryId.AGE_INFO, shard -> shard.birthDates(friends))) {
+                dates.addAll(shardDates);
+            }
+
+            int oldest = -1;
+            int youngest = -1;
+            for (int i = 0; i < dates.size(); i++) {
+                int c = oldest < 0 ? 0 : compareBirthDates(dates, i, oldest);
+                if (oldest < 0 || c < 0 || c == 0 && dates.get(i, 0) > dates.get(oldest, 0)) {
+                    oldest = i;
+                }
+                c = youngest < 0 ? 0 : compareBirthDates(dates, i, youngest);
+                if (youngest < 0 || c > 0 || c == 0 && dates.get(i, 0) < dates.get(youngest, 0)) {
+                    youngest = i;
+                }
+            }
+            if (oldest < 0) {
+                return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+            }
+
+            Map<Long, UserInfo> users = users(QueryId.AGE_INFO, Arrays.asList(dates.get(oldest, 0), dates.get(youngest, 0)));
+            return new AgeInfo(user(dates.get(oldest, 0), users), user(dates.get(youngest, 0), users));
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+        }
+    }
+
+    // Query 9, evaluated by a SiblingFinder loaded from every shard
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() {
+        FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
+        try {
+            SiblingFinder finder = SiblingFinder.load(runners(QueryId.POTENTIAL_SIBLINGS), UsersTable, HometownCitiesTable, FriendsTable);
+            UserInfo[] users = new UserInfo[finder.size()];     // built on first use, then shared
+            for (long pair : finder.findPairs(ForkJoinPool.commonPool())) {
+                int i = (int) (pair >>> 32);
+                int j = (int) pair;
+                if (users[i] == null) {
+                    users[i] = new UserInfo(finder.userId(i), finder.firstName(i), finder.lastName(i));
+                }
+                if (users[j] == null) {
+                    users[j] = new UserInfo(finder.userId(j), finder.firstName(j), finder.lastName(j));
+                }
+                results.add(new SiblingInfo(users[i], users[j]));
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        return results;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: discards the in-memory copy of the Friends rows of all shards so that the next
+    //          suggestFriends reloads it
+    public void refreshFriendGraph() {
+        state.refreshFriendGraph();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the statements cached on every shard if this oracle created its own state;
+    //          a state passed in is left open for the other oracles sharing it. The connections
+    //          are owned by the caller and stay open.
+    @Override
+    public void close() {
+        for (StudentFakebookOracle oracle : oracles) {
+            oracle.close();
+        }
+        if (ownsState) {
+            state.close();
+        }
+    }
+
+    // One step of a query evaluated on one shard
+    private interface ShardQuery<T> {
+        T run(StudentFakebookOracle shard) throws SQLException;
+    }
+
+    // EFFECTS: evaluates <shardQuery> on every shard at once and returns the answers in shard
+    //          order. The first shard is always queried here; the others are queried here too if
+    //          the executor refuses them or has not started them by the time they are needed.
+    private <T> List<T> scatter(QueryId query, ShardQuery<T> shardQuery) throws SQLException {
+        List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>();
+        for (StudentFakebookOracle oracle : oracles) {
+            tasks.add(new FutureTask<T>(() -> shardQuery.run(oracle)));
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            }
+            catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+
+        List<T> answers = new ArrayList<T>();
+        try {
+            for (FutureTask<T> task : tasks) {
+                task.run();
+                answers.add(task.get());
+            }
+            return answers;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while querying the shards for " + query.methodName(), e);
+        }
+        finally {
+            for (FutureTask<T> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    // EFFECTS: returns the rows of <lists> one list after the other
+    private <T> FakebookArrayList<T> appended(List<FakebookArrayList<T>> lists, String separator) {
+        FakebookArrayList<T> results = new FakebookArrayList<T>(separator);
+        for (FakebookArrayList<T> list : lists) {
+            results.addAll(list);
+        }
+        return results;
+    }
+
+    // EFFECTS: returns the UserInfo of each of <userIds> that is in the UsersTable of any shard
+    private Map<Long, UserInfo> users(QueryId query, Collection<Long> userIds) throws SQLException {
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        for (Map<Long, UserInfo> shardUsers : scatter(query, shard -> shard.fetchUsers(query, userIds))) {
+            users.putAll(shardUsers);
+        }
+        return users;
+    }
+
+    // EFFECTS: returns the PhotoInfo of each of <photoIds> that any shard holds with its album
+    private Map<Long, PhotoInfo> photos(QueryId query, Collection<Long> photoIds) throws SQLException {
+        Map<Long, PhotoInfo> photos = new HashMap<Long, PhotoInfo>();
+        for (Map<Long, PhotoInfo> shardPhotos : scatter(query, shard -> shard.fetchPhotos(query, photoIds))) {
+            photos.putAll(shardPhotos);
+        }
+        return photos;
+    }
+
+    // EFFECTS: returns the UserInfo of <userId> from <users>, or one without names if the user
+    //          was not found
+    private UserInfo user(long userId, Map<Long, UserInfo> users) {
+        UserInfo user = users.get(userId);
+        return user == null ? new UserInfo(userId, null, null) : user;
+    }
+
+    // EFFECTS: compares the (year, month, day) columns of rows <a> and <b> of <dates>
+    private static int compareBirthDates(IdRows dates, int a, int b) {
+        for (int column = 1; column <= 3; column++) {
+            int c = Long.compare(dates.get(a, column), dates.get(b, column));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    // The in-memory copy of the Friends rows of all shards, loaded on first use
+    private FriendGraph friendGraph() throws SQLException {
+        return state.friendGraph(runners(QueryId.SUGGEST_FRIENDS));
+    }
+
+    // EFFECTS: returns the hooks through which a load reads every shard in turn as part of
+    //          <query>, each under the timeout of <query> on the oracle of its shard
+    private List<StatementRunner> runners(QueryId query) {
+        List<StatementRunner> runners = new ArrayList<StatementRunner>();
+        for (StudentFakebookOracle oracle : oracles) {
+            runners.add(oracle.runner(query));
+        }
+        return runners;
+    }
+
+    // Member Variables
+    private final List<StudentFakebookOracle> oracles = new ArrayList<StudentFakebookOracle>();
+    private final ExecutorService executor;
+    private final FakebookOracleState state;
+    private final boolean ownsState;                // whether close() closes <state>
+    private final FakebookOracleConfig config;
+    private final String UsersTable = FakebookOracleConstants.UsersTable;
+    private final String FriendsTable = FakebookOracleConstants.FriendsTable;
+    private final String HometownCitiesTable = FakebookOracleConstants.HometownCitiesTable;
+    private final String TagsTable = FakebookOracleConstants.TagsTable;
+}
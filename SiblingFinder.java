@@ -0,0 +1,235 @@
+package project2;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/*
+    The SiblingFinder class evaluates Query 9 (potential siblings) on the client as a hash join.
+    Every user with a last name, a birth year and a hometown is loaded once, in user ID order,
+    into parallel arrays. Users are then bucketed by (last name, hometown city): both are
+    dictionary-encoded to int codes, and the two codes packed into one long key of a
+    LongIntHashMap, so distinct (last name, hometown) pairs never share a bucket. The buckets are
+    stored CSR-style, with members kept in user ID order. Friendship is tested against a LongPairSet built from the Friends
+    table.
+
+    Buckets are independent, so they are processed in parallel on a ForkJoinPool. Inside a bucket
+    the members are sorted by birth year, so only pairs at most MAX_YEAR_GAP years apart are
+    examined. The birth-year filter is applied in the same pass as the friendship test.
+    Qualifying pairs are recorded as (smaller index, larger index) packed into a long. Indexes
+    follow user ID order, so sorting the packed longs gives exactly
+    "order by U1.user_id, U2.user_id".
+*/
+final class SiblingFinder {
+    // [Constructor]
+    private SiblingFinder(long[] ids, String[] firstNames, String[] lastNames, int[] years, int[] bucketOffsets, int[] members, LongPairSet friends) {
+        this.ids = ids;
+        this.firstNames = firstNames;
+        this.lastNames = lastNames;
+        this.years = years;
+        this.bucketOffsets = bucketOffsets;
+        this.members = members;
+        this.friends = friends;
+    }
+
+    // EFFECTS: loads through <runner> the users, hometowns and friendships needed by Query 9 and
+    //          buckets the users
+    static SiblingFinder load(StatementRunner runner, String usersTable, String hometownCitiesTable, String friendsTable) throws SQLException {
+        return load(Collections.singletonList(runner), usersTable, hometownCitiesTable, friendsTable);
+    }
+
+    // REQUIRES: the users of the connections of <runners> are disjoint user_id ranges listed in
+    //           ascending order
+    // EFFECTS: loads the users and friendships through every one of <runners> in turn and buckets
+    //          all the users together
+    static SiblingFinder load(List<StatementRunner> runners, String usersTable, String hometownCitiesTable, String friendsTable) throws SQLException {
+        // Step 1
+        // ------------
+        // * Load every candidate user in user ID order and give it a bucket number
+        long[] ids = new long[1024];
+        String[] firstNames = new String[1024];
+        String[] lastNames = new String[1024];
+        int[] years = new int[1024];
+        int[] buckets = new int[1024];
+        int count = 0;
+        Map<String, Integer> lastNameCodes = new HashMap<String, Integer>();
+        LongIntHashMap hometownCodes = new LongIntHashMap(1024);
+        int hometowns = 0;             // the number of distinct hometowns, i.e. the next code
+        int minHometownCode = -1;      // the code of hometown Long.MIN_VALUE, which hometownCodes cannot hold
+        LongIntHashMap bucketCodes = new LongIntHashMap(1024);
+        for (StatementRunner runner : runners) {
+            try (PreparedStatement stmt = runner.connection().prepareStatement(
+                    "select U.user_id, U.first_name, U.last_name, U.year_of_birth, H.hometown_city_id " +
+                    "from " + usersTable + " U, " + hometownCitiesTable + " H " +
+                    "where U.user_id = H.user_id and U.last_name is not null and U.year_of_birth is not null and H.hometown_city_id is not null " +
+                    "order by U.user_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        if (++rows % LOAD_FETCH_SIZE == 0) {
+                            runner.checkCancelled();
+                        }
+                        if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                            firstNames = Arrays.copyOf(firstNames, count * 2);
+                            lastNames = Arrays.copyOf(lastNames, count * 2);
+                            years = Arrays.copyOf(years, count * 2);
+                            buckets = Arrays.copyOf(buckets, count * 2);
+                        }
+                        ids[count] = rst.getLong(1);
+                        firstNames[count] = rst.getString(2);
+                        lastNames[count] = rst.getString(3);
+                        years[count] = rst.getInt(4);
+                        long hometown = rst.getLong(5);
+                        Integer lastNameCode = lastNameCodes.get(lastNames[count]);
+                        if (lastNameCode == null) {
+                            lastNameCode = lastNameCodes.size();
+                            lastNameCodes.put(lastNames[count], lastNameCode);
+                        }
+                        int hometownCode = hometown == Long.MIN_VALUE ? minHometownCode : hometownCodes.get(hometown, -1);
+                        if (hometownCode < 0) {
+                            hometownCode = hometowns++;
+                            if (hometown == Long.MIN_VALUE) {
+                                minHometownCode = hometownCode;
+                            }
+                            else {
+                                hometownCodes.putIfAbsent(hometown, hometownCode);
+                            }
+                        }
+                        long key = ((long) hometownCode << 32) | lastNameCode;
+                        buckets[count] = bucketCodes.putIfAbsent(key, bucketCodes.size());
+                        count++;
+                    }
+                    runner.fetched(rows);
+                }
+            }
+        }
+
+        // Step 2
+        // ------------
+        // * Counting sort the users into CSR buckets; members stay in user ID order
+        int bucketCount = bucketCodes.size();
+        int[] bucketOffsets = new int[bucketCount + 1];
+        for (int i = 0; i < count; i++) {
+            bucketOffsets[buckets[i] + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketOffsets[b + 1] += bucketOffsets[b];
+        }
+        int[] cursor = Arrays.copyOf(bucketOffsets, bucketCount);
+        int[] members = new int[count];
+        for (int i = 0; i < count; i++) {
+            members[cursor[buckets[i]]++] = i;
+        }
+
+        // Step 3
+        // ------------
+        // * Load the friendships
+        LongPairSet friends = LongPairSet.loadFriends(runners, friendsTable);
+        return new SiblingFinder(Arrays.copyOf(ids, count), Arrays.copyOf(firstNames, count), Arrays.copyOf(lastNames, count),
+                                 Arrays.copyOf(years, count), bucketOffsets, members, friends);
+    }
+
+    // EFFECTS: returns every qualifying pair as (i << 32 | j) with user indexes i < j, sorted;
+    //          buckets are processed in parallel on <pool>
+    long[] findPairs(ForkJoinPool pool) {
+        int bucketCount = bucketOffsets.length - 1;
+        try {
+            long[][] perBucket = pool.submit(() -> IntStream.range(0, bucketCount).parallel()
+                .mapToObj(this::pairsInBucket)
+                .toArray(long[][]::new)).get();
+            int total = 0;
+            for (long[] pairs : perBucket) {
+                total += pairs.length;
+            }
+            long[] all = new long[total];
+            int at = 0;
+            for (long[] pairs : perBucket) {
+                System.arraycopy(pairs, 0, all, at, pairs.length);
+                at += pairs.length;
+            }
+            Arrays.sort(all);
+            return all;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while finding siblings", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("failed to find siblings", e.getCause());
+        }
+    }
+
+    // The number of loaded users; user indexes run from 0 to size() - 1
+    int size() {
+        return ids.length;
+    }
+
+    long userId(int index) {
+        return ids[index];
+    }
+
+    String firstName(int index) {
+        return firstNames[index];
+    }
+
+    String lastName(int index) {
+        return lastNames[index];
+    }
+
+    // EFFECTS: returns the packed qualifying pairs among the members of bucket <b>
+    private long[] pairsInBucket(int b) {
+        int start = bucketOffsets[b];
+        int end = bucketOffsets[b + 1];
+        if (end - start < 2) {
+            return EMPTY;
+        }
+        
+        // Sort the members by birth year (packing year and index keeps this a primitive sort)
+        long[] byYear = new long[end - start];
+        for (int i = start; i < end; i++) {
+            byYear[i - start] = ((long) years[members[i]] << 32) | members[i];
+        }
+        Arrays.sort(byYear);
+        
+        long[] pairs = new long[16];
+        int count = 0;
+        for (int x = 0; x < byYear.length; x++) {
+            int u = (int) byYear[x];
+            for (int y = x + 1; y < byYear.length; y++) {
+                int w = (int) byYear[y];
+                if (years[w] - years[u] > MAX_YEAR_GAP) {
+                    break;
+                }
+                if (friends.contains(ids[u], ids[w])) {
+                    if (count == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, count * 2);
+                    }
+                    pairs[count++] = ((long) Math.min(u, w) << 32) | Math.max(u, w);
+                }
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    // Member Variables
+    private static final int MAX_YEAR_GAP = 10;
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private static final long[] EMPTY = new long[0];
+    private final long[] ids;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final int[] years;
+    private final int[] bucketOffsets;
+    private final int[] members;
+    private final LongPairSet friends;
+}
@@ -0,0 +1,124 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The StatementCache class keeps the PreparedStatements of one JDBC connection open between
+    calls so that each query is parsed by the database once and then re-executed with new bind
+    values. Statements are keyed by the query they belong to plus a step name (a query may run
+    several statements), and the least recently used statement is closed once more than
+    <capacity> statements are open.
+
+    Hit and miss counters are kept so that cursor reuse can be confirmed under load: after
+    warm-up, every call should be a hit.
+*/
+public final class StatementCache implements AutoCloseable {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection and <capacity> >= 1
+    // EFFECTS: statements are prepared with the given result set type and concurrency
+    StatementCache(Connection connection, int capacity, int resultSetType, int resultSetConcurrency) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("statement cache capacity must be at least 1");
+        }
+        this.connection = connection;
+        this.capacity = capacity;
+        this.resultSetType = resultSetType;
+        this.resultSetConcurrency = resultSetConcurrency;
+    }
+
+    // EFFECTS: returns the open statement for step <step> of <query>, preparing <sql> if the
+    //          statement is not cached yet. The statement stays owned by the cache: callers close
+    //          their ResultSets but never the statement itself.
+    public synchronized PreparedStatement prepare(QueryId query, String step, String sql) throws SQLException {
+        String key = query.methodName() + "#" + step;
+        PreparedStatement stmt = statements.get(key);
+        if (stmt != null && !stmt.isClosed()) {
+            hits++;
+            return stmt;
+        }
+        misses++;
+        stmt = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        statements.put(key, stmt);
+        preparedSql.put(key, sql);
+        return stmt;
+    }
+
+    // EFFECTS: returns the SQL of every statement this cache has prepared, evicted ones included,
+    //          keyed by "<query method>#<step>"
+    public synchronized Map<String, String> preparedSql() {
+        return new LinkedHashMap<String, String>(preparedSql);
+    }
+
+    // The number of prepare() calls answered from the cache
+    public synchronized long hits() {
+        return hits;
+    }
+
+    // The number of prepare() calls that had to prepare a new statement
+    public synchronized long misses() {
+        return misses;
+    }
+
+    // The number of statements closed to make room for others
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    // The fraction of prepare() calls answered from the cache
+    public synchronized double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes every cached statement; the connection itself stays open
+    @Override
+    public synchronized void close() {
+        for (PreparedStatement stmt : statements.values()) {
+            closeQuietly(stmt);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        }
+        catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // Member Variables
+    private final Connection connection;
+    private final int capacity;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private final Map<String, String> preparedSql = new LinkedHashMap<String, String>();
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            evictions++;
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+}
@@ -0,0 +1,34 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+    The StatementRunner interface is the hook through which code outside StudentFakebookOracle
+    (the bulk loads of the in-memory engines, ResultSetStream) runs statements for one query of
+    an oracle, under the same rules as the oracle's own statements: the query's timeout, the
+    QueryMetrics of a measured call, and cancel(), which cancels the statement in flight and
+    makes the next execute() or checkCancelled() fail.
+
+    A load prepares its statements on connection() and closes them itself; it calls fetched()
+    once it has read a result, and checkCancelled() between fetch batches of a long one, since
+    not every driver abandons a result that is already being read when its statement is
+    cancelled.
+*/
+interface StatementRunner {
+    // The connection to prepare statements on
+    Connection connection();
+
+    // MODIFIES: stmt
+    // EFFECTS: executes <stmt>, prepared on connection(), fetching <fetchSize> rows per round trip;
+    //          fails at once if the oracle was cancelled
+    ResultSet execute(PreparedStatement stmt, int fetchSize) throws SQLException;
+
+    // EFFECTS: records that the result of the last execute() has been read, <rows> rows
+    void fetched(int rows);
+
+    // EFFECTS: fails if the oracle was cancelled since the last execute()
+    void checkCancelled() throws SQLException;
+}
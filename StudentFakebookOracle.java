@@ -1,9 +1,12 @@
 package project2;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.util.Map;
 import java.util.function.LongBinaryOperator;
 import java.sql.ResultSet;
@@ -13,11 +16,35 @@ import java.sql.ResultSet;
     the abstract query functions that investigate the database provided via the <connection>
     parameter of the constructor to discover specific information.
 */
-public final class StudentFakebookOracle extends FakebookOracle {
+public final class StudentFakebookOracle extends FakebookOracle implements AutoCloseable {
     // [Constructor]
     // REQUIRES: <connection> is a valid JDBC connection
     public StudentFakebookOracle(Connection connection) {
+        this(connection, FakebookOracleConfig.fromSystemProperties());
+    }
+
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS: evaluates each query with the engine selected for it in <config>
+    public StudentFakebookOracle(Connection connection, FakebookOracleConfig config) {
+        this(connection, new FakebookOracleState(config), true);
+    }
+
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection to the database of <state>
+    // EFFECTS: evaluates each query as configured by <state>, reusing and adding to what other
+    //          oracles sharing <state> have prepared, observed and loaded
+    public StudentFakebookOracle(Connection connection, FakebookOracleState state) {
+        this(connection, state, false);
+    }
+
+    private StudentFakebookOracle(Connection connection, FakebookOracleState state, boolean ownsState) {
         oracle = connection;
+        this.state = state;
+        this.ownsState = ownsState;
+        config = state.config();
+        statements = state.statements(connection);
+        fetchSizes = state.fetchSizes();
     }
     
     @Override
@@ -35,13 +62,30 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // mechanisms for opening up a statement, executing a query, walking through results, extracting
     // data, and more things that you will need to do for the remaining nine queries
     public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        return findMonthOfBirthInfo(config.engine(QueryId.MONTH_OF_BIRTH_INFO));
+    }
+
+    // Query 0, evaluated with an explicitly chosen <engine>
+    public BirthMonthInfo findMonthOfBirthInfo(QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return findMonthOfBirthInfoSql();
+        }
+        BirthMonthInfo info = findMonthOfBirthInfoInMemory();
+        if (config.crossCheck()) {
+            info = crossChecked(QueryId.MONTH_OF_BIRTH_INFO, info, findMonthOfBirthInfoSql());
+        }
+        return info;
+    }
+
+    // Query 0, evaluated by the database
+    private BirthMonthInfo findMonthOfBirthInfoSql() {
+        try {
             // Step 1
             // ------------
             // * Find the total number of users with birth month info
             // * Find the month in which the most users were born
             // * Find the month in which the fewest (but at least 1) users were born
-            ResultSet rst = stmt.executeQuery(
+            PreparedStatement stmt = statements.prepare(QueryId.MONTH_OF_BIRTH_INFO, "counts",
                 "SELECT COUNT(*) AS Birthed, Month_of_Birth " +         // select birth months and number of uses with that birth month
                 "FROM " + UsersTable + " " +                            // from all users
                 "WHERE Month_of_Birth IS NOT NULL " +                   // for which a birth month is available
@@ -51,56 +95,115 @@ public final class StudentFakebookOracle extends FakebookOracle {
             int mostMonth = 0;
             int leastMonth = 0;
             int total = 0;
-            while (rst.next()) {                       // step through result rows/records one by one
-                if (rst.isFirst()) {                   // if first record
-                    mostMonth = rst.getInt(2);         //   it is the month with the most
-                }
-                if (rst.isLast()) {                    // if last record
-                    leastMonth = rst.getInt(2);        //   it is the month with the least
+            try (ResultSet rst = execute(QueryId.MONTH_OF_BIRTH_INFO, "counts", stmt)) {
+                int rows = 0;
+                while (rst.next()) {                       // step through result rows/records one by one
+                    rows++;
+                    if (rows == 1) {                       // if first record
+                        mostMonth = rst.getInt(2);         //   it is the month with the most
+                    }
+                    leastMonth = rst.getInt(2);            // the last record read is the month with the least
+                    total += rst.getInt(1);                // get the first field's value as an integer
                 }
-                total += rst.getInt(1);                // get the first field's value as an integer
-            }
-            BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
-            
-            // Step 2
-            // ------------
-            // * Get the names of users born in the most popular birth month
-            rst = stmt.executeQuery(
-                "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
-                "FROM " + UsersTable + " " +                              // from all users
-                "WHERE Month_of_Birth = " + mostMonth + " " +             // born in the most popular birth month
-                "ORDER BY User_ID");                                      // sort smaller IDs first
-                
-            while (rst.next()) {
-                info.addMostPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                fetched(QueryId.MONTH_OF_BIRTH_INFO, "counts", rows);
             }
+            return birthMonthInfo(total, mostMonth, leastMonth);
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new BirthMonthInfo(-1, -1, -1);
+        }
+    }
 
-            // Step 3
-            // ------------
-            // * Get the names of users born in the least popular birth month
-            rst = stmt.executeQuery(
-                "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
-                "FROM " + UsersTable + " " +                              // from all users
-                "WHERE Month_of_Birth = " + leastMonth + " " +            // born in the least popular birth month
-                "ORDER BY User_ID");                                      // sort smaller IDs first
-                
-            while (rst.next()) {
-                info.addLeastPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+    // Query 0, with the counts of step 1 read from the maintained IncrementalAggregates instead
+    // of grouping UsersTable
+    private BirthMonthInfo findMonthOfBirthInfoInMemory() {
+        try {
+            IncrementalAggregates aggregates = aggregates(QueryId.MONTH_OF_BIRTH_INFO);
+            int total;
+            int mostMonth;
+            int leastMonth;
+            synchronized (aggregates) {
+                total = (int) aggregates.birthMonthTotal();
+                mostMonth = aggregates.mostPopularBirthMonth();
+                leastMonth = aggregates.leastPopularBirthMonth();
             }
+            return birthMonthInfo(total, mostMonth, leastMonth);
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new BirthMonthInfo(-1, -1, -1);
+        }
+    }
 
-            // Step 4
-            // ------------
-            // * Close resources being used
-            rst.close();
-            stmt.close();                            // if you close the statement first, the result set gets closed automatically
+    // EFFECTS: completes Query 0 from the counts of step 1 by fetching the users born in the most
+    //          and least popular months (steps 2 and 3)
+    private BirthMonthInfo birthMonthInfo(int total, int mostMonth, int leastMonth) throws SQLException {
+        BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+        
+        // Step 2
+        // ------------
+        // * Get the names of users born in the most popular birth month
+        // * The month is a bind variable, so steps 2 and 3 share one cached statement
+        for (UserInfo user : usersBornIn(mostMonth)) {
+            info.addMostPopularBirthMonthUser(user);
+        }
 
-            return info;
+        // Step 3
+        // ------------
+        // * Get the names of users born in the least popular birth month
+        for (UserInfo user : usersBornIn(leastMonth)) {
+            info.addLeastPopularBirthMonthUser(user);
+        }
+
+        // Step 4
+        // ------------
+        // * Result sets were closed by their try-with-resources blocks; the statements stay open
+        //   in the statement cache so the next call skips parsing
 
+        return info;
+    }
+    
+    // EFFECTS: returns the users born in <month>, sorted by user ID (steps 2 and 3 of Query 0)
+    List<UserInfo> usersBornIn(int month) throws SQLException {
+        PreparedStatement stmt = statements.prepare(QueryId.MONTH_OF_BIRTH_INFO, "users",
+            "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
+            "FROM " + UsersTable + " " +                              // from all users
+            "WHERE Month_of_Birth = ? " +                             // born in the requested birth month
+            "ORDER BY User_ID");                                      // sort smaller IDs first
+        
+        List<UserInfo> users = new ArrayList<UserInfo>();
+        stmt.setInt(1, month);
+        try (ResultSet rst = execute(QueryId.MONTH_OF_BIRTH_INFO, "users", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                users.add(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+            }
+            fetched(QueryId.MONTH_OF_BIRTH_INFO, "users", rows);
         }
-        catch (SQLException e) {
-            System.err.println(e.getMessage());
-            return new BirthMonthInfo(-1, -1, -1);
+        return users;
+    }
+    
+    // EFFECTS: returns the number of users born in each month that has any, keyed by month: the
+    //          rows of step 1 of Query 0, for a caller that combines them with other counts
+    SortedMap<Integer, Integer> birthMonthCounts() throws SQLException {
+        PreparedStatement stmt = statements.prepare(QueryId.MONTH_OF_BIRTH_INFO, "monthCounts",
+            "SELECT Month_of_Birth, COUNT(*) " +
+            "FROM " + UsersTable + " " +
+            "WHERE Month_of_Birth IS NOT NULL " +
+            "GROUP BY Month_of_Birth");
+        
+        SortedMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        try (ResultSet rst = execute(QueryId.MONTH_OF_BIRTH_INFO, "monthCounts", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                counts.put(rst.getInt(1), rst.getInt(2));
+            }
+            fetched(QueryId.MONTH_OF_BIRTH_INFO, "monthCounts", rows);
         }
+        return counts;
     }
     
     @Override
@@ -111,7 +214,24 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (C) The first name held by the most users
     //        (D) The number of users whose first name is that identified in (C)
     public FirstNameInfo findNameInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        return findNameInfo(config.engine(QueryId.NAME_INFO));
+    }
+
+    // Query 1, evaluated with an explicitly chosen <engine>
+    public FirstNameInfo findNameInfo(QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return findNameInfoSql();
+        }
+        FirstNameInfo info = findNameInfoInMemory();
+        if (config.crossCheck()) {
+            info = crossChecked(QueryId.NAME_INFO, info, findNameInfoSql());
+        }
+        return info;
+    }
+
+    // Query 1, evaluated by the database
+    private FirstNameInfo findNameInfoSql() {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -128,41 +248,154 @@ public final class StudentFakebookOracle extends FakebookOracle {
             */
 
             FirstNameInfo info = new FirstNameInfo();
-	        ResultSet rst = stmt.executeQuery("select distinct first_name " +
+            PreparedStatement stmt = statements.prepare(QueryId.NAME_INFO, "longest", "select distinct first_name " +
                     "from " + UsersTable +
                     " where length(first_name) = (select max(length(first_name)) from " + UsersTable + ")"+ 
                     "order by first_name asc");
-        	while (rst.next()) {
-        		info.addLongName(rst.getString(1));
+            try (ResultSet rst = execute(QueryId.NAME_INFO, "longest", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    info.addLongName(rst.getString(1));
+                }
+                fetched(QueryId.NAME_INFO, "longest", rows);
             }
-        	
-        	rst = stmt.executeQuery("select distinct first_name " +
+            
+            stmt = statements.prepare(QueryId.NAME_INFO, "shortest", "select distinct first_name " +
                     "from " + UsersTable +
                     " where length(first_name) = (select min(length(first_name)) from " + UsersTable + ")"+
                     "order by first_name asc");
-        	while (rst.next()) {
-        		info.addShortName(rst.getString(1));
+            try (ResultSet rst = execute(QueryId.NAME_INFO, "shortest", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    info.addShortName(rst.getString(1));
+                }
+                fetched(QueryId.NAME_INFO, "shortest", rows);
             }
-        	
-        	rst = stmt.executeQuery("select distinct first_name, count(*) " +
+            
+            stmt = statements.prepare(QueryId.NAME_INFO, "common", "select distinct first_name, count(*) " +
                     "from " + UsersTable +
                     " group by first_name " +
                     "having count(*) = (select max(count(*)) from " + UsersTable + " group by first_name)" + "order by first_name asc");
-        	while (rst.next()) {
-        		info.addCommonName(rst.getString(1));
-        		info.setCommonNameCount(rst.getInt(2));
-            }	
-        		
+            try (ResultSet rst = execute(QueryId.NAME_INFO, "common", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    info.addCommonName(rst.getString(1));
+                    info.setCommonNameCount(rst.getInt(2));
+                }
+                fetched(QueryId.NAME_INFO, "common", rows);
+            }
+            
             return info;
 
             // return new FirstNameInfo();                // placeholder for compilation
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
+            return new FirstNameInfo();
+        }
+    }
+    
+    // Query 1, evaluated in one pass over the first names
+    // -----------------------------------------------------------------------------------
+    // The SQL path scans UsersTable three times (longest, shortest and most common names, the
+    // last one with a nested aggregate). Here first_name is streamed once through a forward-only
+    // cursor into a NameFrequencyTable, and all three answers are read off the distinct names.
+    // Lengths are counted in characters like Oracle's length(), and names are sorted the way
+    // "order by first_name asc" sorts them, with a NULL name last.
+    private FirstNameInfo findNameInfoInMemory() {
+        try {
+            PreparedStatement stmt = statements.prepare(QueryId.NAME_INFO, "scan", "select first_name from " + UsersTable);
+            NameFrequencyTable names = new NameFrequencyTable(1024);
+            try (ResultSet rst = execute(QueryId.NAME_INFO, "scan", stmt, SCAN_FETCH_SIZE)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    names.add(rst.getString(1));
+                }
+                fetched(QueryId.NAME_INFO, "scan", rows);
+            }
+            
+            return nameInfo(names);
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
             return new FirstNameInfo();
         }
     }
     
+    // EFFECTS: answers Query 1 from the first names counted in <names>
+    FirstNameInfo nameInfo(NameFrequencyTable names) {
+        int longest = -1;
+        int shortest = Integer.MAX_VALUE;
+        int mostCommon = names.nullCount();
+        for (int slot = 0; slot < names.slots(); slot++) {
+            String name = names.name(slot);
+            if (name != null) {
+                int length = name.codePointCount(0, name.length());
+                longest = Math.max(longest, length);
+                shortest = Math.min(shortest, length);
+                mostCommon = Math.max(mostCommon, names.count(slot));
+            }
+        }
+        
+        List<String> longNames = new ArrayList<String>();
+        List<String> shortNames = new ArrayList<String>();
+        List<String> commonNames = new ArrayList<String>();
+        for (int slot = 0; slot < names.slots(); slot++) {
+            String name = names.name(slot);
+            if (name != null) {
+                int length = name.codePointCount(0, name.length());
+                if (length == longest) {
+                    longNames.add(name);
+                }
+                if (length == shortest) {
+                    shortNames.add(name);
+                }
+                if (names.count(slot) == mostCommon) {
+                    commonNames.add(name);
+                }
+            }
+        }
+        Collections.sort(longNames);
+        Collections.sort(shortNames);
+        Collections.sort(commonNames);
+        if (mostCommon > 0 && names.nullCount() == mostCommon) {
+            commonNames.add(null);
+        }
+        
+        FirstNameInfo info = new FirstNameInfo();
+        for (String name : longNames) {
+            info.addLongName(name);
+        }
+        for (String name : shortNames) {
+            info.addShortName(name);
+        }
+        for (String name : commonNames) {
+            info.addCommonName(name);
+            info.setCommonNameCount(mostCommon);
+        }
+        return info;
+    }
+    
+    // EFFECTS: returns how many users have each first name, counted by the database
+    NameFrequencyTable firstNameCounts() throws SQLException {
+        PreparedStatement stmt = statements.prepare(QueryId.NAME_INFO, "nameCounts",
+            "select first_name, count(*) from " + UsersTable + " group by first_name");
+        NameFrequencyTable names = new NameFrequencyTable(1024);
+        try (ResultSet rst = execute(QueryId.NAME_INFO, "nameCounts", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                names.add(rst.getString(1), rst.getInt(2));
+            }
+            fetched(QueryId.NAME_INFO, "nameCounts", rows);
+        }
+        return names;
+    }
+    
     @Override
     // Query 2
     // -----------------------------------------------------------------------------------
@@ -171,9 +404,26 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // Be careful! Remember that if two users are friends, the Friends table only contains
     // the one entry (U1, U2) where U1 < U2.
     public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return lonelyUsers(config.engine(QueryId.LONELY_USERS));
+    }
+
+    // Query 2, evaluated with an explicitly chosen <engine>
+    public FakebookArrayList<UserInfo> lonelyUsers(QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return lonelyUsersSql();
+        }
+        FakebookArrayList<UserInfo> results = lonelyUsersInMemory();
+        if (config.crossCheck()) {
+            results = crossChecked(QueryId.LONELY_USERS, results, lonelyUsersSql());
+        }
+        return results;
+    }
+
+    // Query 2, evaluated by the database
+    private FakebookArrayList<UserInfo> lonelyUsersSql() {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -182,22 +432,74 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(u1);
                 results.add(u2);
             */
-            ResultSet rst = stmt.executeQuery("select user_id, first_name, last_name " +
-                    "from " + UsersTable +
-                    " where user_id not in (select user1_id from " + FriendsTable + " union select user2_id from " + FriendsTable + ")" + "order by user_id asc");
-        	while (rst.next()) {
-        		Long user_ID = rst.getLong(1);
-                	String firstName = rst.getString(2);
-                	String lastName = rst.getString(3);
-                	results.add(new UserInfo(user_ID, firstName, lastName));
+            PreparedStatement stmt = statements.prepare(QueryId.LONELY_USERS, "main", lonelyUsersQuery());
+            try (ResultSet rst = execute(QueryId.LONELY_USERS, "main", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    results.add(userRow(rst));
+                }
+                fetched(QueryId.LONELY_USERS, "main", rows);
             }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
         }
         
         return results;
     }
+    
+    // Query 2, evaluated as a bitmap anti-join: both ID columns of FriendsTable are streamed once
+    // into a UserIdBitmap, then UsersTable is streamed in user_id order and every user whose bit
+    // is clear is kept. Memory follows the ID space instead of the number of friendships, and
+    // neither the UNION's sort nor the NOT IN runs. As with NOT IN, a NULL friend ID means that
+    // no user qualifies.
+    private FakebookArrayList<UserInfo> lonelyUsersInMemory() {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        try {
+            UserIdBitmap befriended = UserIdBitmap.loadFriends(runner(QueryId.LONELY_USERS), FriendsTable, config.offHeapBitmaps());
+            if (befriended.containsNull()) {
+                return results;
+            }
+            PreparedStatement stmt = statements.prepare(QueryId.LONELY_USERS, "users",
+                "select user_id, first_name, last_name from " + UsersTable + " order by user_id asc");
+            try (ResultSet rst = execute(QueryId.LONELY_USERS, "users", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    long userId = rst.getLong(1);
+                    if (!rst.wasNull() && !befriended.contains(userId)) {
+                        results.add(userRow(rst));
+                    }
+                }
+                fetched(QueryId.LONELY_USERS, "users", rows);
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        
+        return results;
+    }
+    
+    // Query 2, streamed
+    // -----------------------------------------------------------------------------------
+    // Same rows as lonelyUsers(), fetched lazily through a forward-only cursor so that memory
+    // stays flat regardless of the number of lonely users. The stream must be closed.
+    public Stream<UserInfo> streamLonelyUsers() throws SQLException {
+        return ResultSetStream.of(runner(QueryId.LONELY_USERS), lonelyUsersQuery(), fetchSizes.fetchSize(QueryId.LONELY_USERS, "stream", SCAN_FETCH_SIZE), this::userRow);
+    }
+    
+    // Query 2, pushing each row to <sink> as it is fetched
+    public void lonelyUsers(Consumer<? super UserInfo> sink) throws SQLException {
+        ResultSetStream.drain(streamLonelyUsers(), sink);
+    }
+    
+    private String lonelyUsersQuery() {
+        return "select user_id, first_name, last_name " +
+                "from " + UsersTable +
+                " where user_id not in (select user1_id from " + FriendsTable + " union select user2_id from " + FriendsTable + ")" + "order by user_id asc";
+    }
         
         
     @Override
@@ -208,7 +510,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -217,23 +519,56 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(u1);
                 results.add(u2);
             */
-            String str = "select U.user_id, U.first_name, U.last_name from " + UsersTable + " U, " + CurrentCitiesTable + " C, " + HometownCitiesTable + " H where U.user_id = C.user_id and U.user_id = H.user_id and C.current_city_id is not null and H.hometown_city_id is not null and C.current_city_id <> H.hometown_city_id " + 
-            "order by U.user_id asc";
-            ResultSet rst = stmt.executeQuery(str);
-        	while (rst.next()) {
-        		Long user_ID = rst.getLong(1);
-                String firstName = rst.getString(2);
-                String lastName = rst.getString(3);
-                results.add(new UserInfo(user_ID, firstName, lastName));
-	    }
+            PreparedStatement stmt = statements.prepare(QueryId.LIVE_AWAY_FROM_HOME, "main", liveAwayFromHomeQuery());
+            try (ResultSet rst = execute(QueryId.LIVE_AWAY_FROM_HOME, "main", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    results.add(userRow(rst));
+                }
+                fetched(QueryId.LIVE_AWAY_FROM_HOME, "main", rows);
+            }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
         }
         
         return results;
     }
     
+    // Query 3, streamed
+    // -----------------------------------------------------------------------------------
+    // Same rows as liveAwayFromHome(), fetched lazily through a forward-only cursor. The stream
+    // must be closed.
+    public Stream<UserInfo> streamLiveAwayFromHome() throws SQLException {
+        return ResultSetStream.of(runner(QueryId.LIVE_AWAY_FROM_HOME), liveAwayFromHomeQuery(), fetchSizes.fetchSize(QueryId.LIVE_AWAY_FROM_HOME, "stream", SCAN_FETCH_SIZE), this::userRow);
+    }
+    
+    // Query 3, pushing each row to <sink> as it is fetched
+    public void liveAwayFromHome(Consumer<? super UserInfo> sink) throws SQLException {
+        ResultSetStream.drain(streamLiveAwayFromHome(), sink);
+    }
+    
+    // Query 3, restricted to the users with <fromUserId> <= user_id <= <toUserId>: one partition
+    // of the range-partitioned scan of PooledFakebookOracle
+    FakebookArrayList<UserInfo> liveAwayFromHome(long fromUserId, long toUserId) throws SQLException {
+        return rangeScan(QueryId.LIVE_AWAY_FROM_HOME, liveAwayFromHomeQuery("and U.user_id between ? and ? "), fromUserId, toUserId, ", ", this::userRow);
+    }
+    
+    private String liveAwayFromHomeQuery() {
+        return liveAwayFromHomeQuery("");
+    }
+    
+    private String liveAwayFromHomeQuery(String filter) {
+        return "select U.user_id, U.first_name, U.last_name from " + UsersTable + " U, " + CurrentCitiesTable + " C, " + HometownCitiesTable + " H where U.user_id = C.user_id and U.user_id = H.user_id and C.current_city_id is not null and H.hometown_city_id is not null and C.current_city_id <> H.hometown_city_id " + 
+                filter + "order by U.user_id asc";
+    }
+    
+    // EFFECTS: maps a (user_id, first_name, last_name) row
+    private UserInfo userRow(ResultSet rst) throws SQLException {
+        return new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
+    }
+    
     @Override
     // Query 4
     // -----------------------------------------------------------------------------------
@@ -242,9 +577,39 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) For each photo identified in (A), find the IDs, first names, and last names
     //            of the users therein tagged
     public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return findPhotosWithMostTags(num, config.engine(QueryId.PHOTOS_WITH_MOST_TAGS));
+    }
+
+    // Query 4, evaluated with an explicitly chosen <engine>
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num, QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return findPhotosWithMostTagsSql(num);
+        }
+        FakebookArrayList<TaggedPhotoInfo> results = findPhotosWithMostTagsInMemory(num);
+        if (config.crossCheck()) {
+            results = crossChecked(QueryId.PHOTOS_WITH_MOST_TAGS, results, findPhotosWithMostTagsSql(num));
+        }
+        return results;
+    }
+
+    // Query 4, evaluated by the database
+    private FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTagsSql(int num) {
         FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        // The ranking of photos by tag count is an inline view of the single statement, so no DDL
+        // runs per call and concurrent callers never share any schema object
+        String sql = "with top_n as ( " +
+            "select photo_id from ( " +
+            "select T.tag_photo_id as photo_id, count(*) as tag_count " +
+            "from " + TagsTable + " T " +
+            "group by T.tag_photo_id order by 2 desc, 1 asc) " +
+            "where rownum <= ?) " +
+            "select N.photo_id, U.user_id " +
+            "from top_n N, " + PhotosTable + " P, " +  AlbumsTable + " A, " + TagsTable + " T, " + UsersTable + " U " +
+            "where N.photo_id = P.photo_id and P.album_id = A.album_id and N.photo_id = T.tag_photo_id and T.tag_subject_id = U.user_id " +
+            "order by 1, 2";
+        
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -258,49 +623,109 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 tp.addTaggedUser(u3);
                 results.add(tp);
             */
-            stmt.executeUpdate("create or replace view top_n as " +
-            "select photo_id from( " +
-            "select P.photo_id, count(*) " +
-            "from " + PhotosTable + " P left join " + TagsTable + " T on P.photo_id = T.tag_photo_id " +
-            "group by P.photo_id order by 2 desc, 1 asc) " +
-            "where rownum <= " + num);
-        	
-            ResultSet rst = stmt.executeQuery("select top_n.photo_id, P.album_id, A.album_name, P.photo_link, U.user_id, U.first_name, U.last_name " +
-            "from top_n, " + PhotosTable + " P, " +  AlbumsTable + " A, " + TagsTable + " T, " + UsersTable + " U " +
-            "where top_n.photo_id = P.photo_id and P.album_id = A.album_id and top_n.photo_id = T.tag_photo_id and T.tag_subject_id = U.user_id " +
-            "order by 1, 5");
-
+            PreparedStatement stmt = statements.prepare(QueryId.PHOTOS_WITH_MOST_TAGS, "main", sql);
+            stmt.setInt(1, num);
+            
+            // The statement returns (photo, tagged user) ID pairs only; the names, links and album
+            // names are fetched afterwards, once per distinct photo and user
+            IdRows tagged = new IdRows(2);
+            try (ResultSet rst = execute(QueryId.PHOTOS_WITH_MOST_TAGS, "main", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    tagged.addRow(rst);
+                }
+                fetched(QueryId.PHOTOS_WITH_MOST_TAGS, "main", rows);
+            }
+            
+            Map<Long, PhotoInfo> photos = fetchPhotos(QueryId.PHOTOS_WITH_MOST_TAGS, tagged.distinct(0));
+            Map<Long, UserInfo> users = fetchUsers(QueryId.PHOTOS_WITH_MOST_TAGS, tagged.distinct(1));
             TaggedPhotoInfo tp = null;
-            Long photoId = 0L;
-            while (rst.next()) {
-                if (!photoId.equals(rst.getLong(1))) {
-                    if (tp != null) {
-                        results.add(tp);
-                    }
-                    photoId = rst.getLong(1);
-                    Long albumId = rst.getLong(2);
-                    String albumName = rst.getString(3);
-                    String photoLink = rst.getString(4);
-                    PhotoInfo p = new PhotoInfo(photoId, albumId, photoLink, albumName);
-                    tp = new TaggedPhotoInfo(p);
-        }
-                Long user_ID = rst.getLong(5);
-                String firstName = rst.getString(6);
-                String lastName = rst.getString(7);
-                tp.addTaggedUser(new UserInfo(user_ID, firstName, lastName));
-        }
-            if (tp != null) {
-        results.add(tp);
-        }
-        stmt.executeUpdate("drop view top_n");
- }
+            for (int i = 0; i < tagged.size(); i++) {
+                if (!tagged.sameGroup(i, 1)) {
+                    tp = new TaggedPhotoInfo(photos.get(tagged.get(i, 0)));
+                    results.add(tp);
+                }
+                tp.addTaggedUser(user(tagged.get(i, 1), users));
+            }
+        }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
         }
         
         return results;
     }
     
+    // Query 4, evaluated from the maintained tag counts: the top <num> photos are read off
+    // PhotoTagCounts without grouping TagsTable, and only their tags, photos and users are
+    // fetched. As in the join of the SQL engine, a ranked photo missing from PhotosTable or
+    // AlbumsTable is left out, and so is a tagged user missing from UsersTable.
+    private FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTagsInMemory(int num) {
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        try {
+            List<Long> photoIds = new ArrayList<Long>();
+            for (long photoId : tagCounts().topPhotos(num)) {
+                photoIds.add(photoId);
+            }
+            IdRows tagged = taggedUsers(photoIds);
+            Map<Long, PhotoInfo> photos = fetchPhotos(QueryId.PHOTOS_WITH_MOST_TAGS, tagged.distinct(0));
+            Map<Long, UserInfo> users = fetchUsers(QueryId.PHOTOS_WITH_MOST_TAGS, tagged.distinct(1));
+            TaggedPhotoInfo tp = null;
+            long tpPhotoId = 0;
+            for (int i = 0; i < tagged.size(); i++) {
+                PhotoInfo photo = photos.get(tagged.get(i, 0));
+                UserInfo user = users.get(tagged.get(i, 1));
+                if (photo == null || user == null) {
+                    continue;
+                }
+                if (tp == null || tpPhotoId != tagged.get(i, 0)) {
+                    tp = new TaggedPhotoInfo(photo);
+                    tpPhotoId = tagged.get(i, 0);
+                    results.add(tp);
+                }
+                tp.addTaggedUser(user);
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        
+        return results;
+    }
+    
+    // EFFECTS: returns the (photo, tag count) rows of the top <num> photos by tag count, most
+    //          tagged first and ties by photo ID: the ranking of Query 4 with the counts kept, for
+    //          a caller that merges it with the rankings of other databases
+    IdRows photoTagCounts(int num) throws SQLException {
+        PreparedStatement stmt = statements.prepare(QueryId.PHOTOS_WITH_MOST_TAGS, "tagCounts", "select photo_id, tag_count from ( " +
+            "select T.tag_photo_id as photo_id, count(*) as tag_count " +
+            "from " + TagsTable + " T " +
+            "group by T.tag_photo_id order by 2 desc, 1 asc) " +
+            "where rownum <= ?");
+        stmt.setInt(1, num);
+        
+        IdRows counts = new IdRows(2);
+        try (ResultSet rst = execute(QueryId.PHOTOS_WITH_MOST_TAGS, "tagCounts", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                counts.addRow(rst);
+            }
+            fetched(QueryId.PHOTOS_WITH_MOST_TAGS, "tagCounts", rows);
+        }
+        return counts;
+    }
+    
+    // EFFECTS: returns the (photo, tagged user) rows of TagsTable for the photos in <photoIds>,
+    //          sorted by photo and then by user, whether or not the users are in UsersTable
+    IdRows taggedUsers(Collection<Long> photoIds) throws SQLException {
+        IdRows tagged = new IdRows(2);
+        fetchByIds(QueryId.PHOTOS_WITH_MOST_TAGS, "taggedUsers", "select tag_photo_id, tag_subject_id from " + TagsTable + " where tag_photo_id in (", photoIds,
+            rst -> tagged.addRow(rst));
+        tagged.sort();
+        return tagged;
+    }
+    
     @Override
     // Query 5
     // -----------------------------------------------------------------------------------
@@ -314,9 +739,43 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) For each pair identified in (A), find the IDs, links, and IDs and names of
     //            the containing album of each photo in which they are tagged together
     public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        return matchMaker(num, yearDiff, config.engine(QueryId.MATCH_MAKER));
+    }
+
+    // Query 5, evaluated with an explicitly chosen <engine>
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff, QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return matchMakerSql(num, yearDiff);
+        }
+        FakebookArrayList<MatchPair> results = matchMakerInMemory(num, yearDiff);
+        if (config.crossCheck()) {
+            results = crossChecked(QueryId.MATCH_MAKER, results, matchMakerSql(num, yearDiff));
+        }
+        return results;
+    }
+
+    // Query 5, evaluated by the database
+    private FakebookArrayList<MatchPair> matchMakerSql(int num, int yearDiff) {
         FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        // The top <num> pairs are ranked in an inline view of the single statement; <yearDiff> and
+        // <num> are bind variables so every call shares one cursor and no DDL runs per call
+        String sql = "with top_n as ( " +
+            "select m1_id, m2_id " +
+            "from (select U1.user_id as m1_id, U2.user_id as m2_id, count(T1.tag_photo_id) " +
+            "from " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2 " +
+            "where U1.gender = 'male' and U2.gender = 'male' and U1.year_of_birth - U2.year_of_birth <= ? and U2.year_of_birth - U1.year_of_birth <= ? " +
+            "and not exists(select * from " + FriendsTable + " F where (F.user1_id = U1.user_id and F.user2_id = U2.user_id)) " +
+            "and U1.user_id = T1.tag_subject_id and U2.user_id = T2.tag_subject_id and T1.tag_photo_id = T2.tag_photo_id and U1.user_id < U2.user_id " +
+            "group by U1.user_id, U2.user_id " +
+            "order by 3 desc, 1 asc, 2 asc) " +
+            "where rownum <= ?) " +
+            "select T.m1_id, T.m2_id, U1.year_of_birth, U2.year_of_birth, P.photo_id " +
+            "from top_n T, " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2, " + PhotosTable + " P, " + AlbumsTable + " A " +
+            "where T.m1_id = U1.user_id and T.m2_id = U2.user_id and T.m1_id = T1.tag_subject_id and T.m2_id = T2.tag_subject_id and T1.tag_photo_id = T2.tag_photo_id and T1.tag_photo_id = P.photo_id and P.album_id = A.album_id " +
+            "order by 1 asc, 2 asc, 5 asc";
+        
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -327,64 +786,133 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 mp.addSharedPhoto(p);
                 results.add(mp);
             */
-            stmt.executeUpdate("create or replace view top_n as " +
-    				"select m1_id, m2_id " +
-    				"from (select U1.user_id as m1_id, U2.user_id as m2_id, count(T1.tag_photo_id) " +
-                    "from " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2 " +
-                    "where U1.gender = 'male' and U2.gender = 'male' and U1.year_of_birth - U2.year_of_birth <= " + yearDiff + " and U2.year_of_birth - U1.year_of_birth <= " + yearDiff +
-                    " and not exists(select * from " + FriendsTable + " F where (F.user1_id = U1.user_id and F.user2_id = U2.user_id)) " +
-                    "and U1.user_id = T1.tag_subject_id and U2.user_id = T2.tag_subject_id and T1.tag_photo_id = T2.tag_photo_id and U1.user_id < U2.user_id " +
-                    "group by U1.user_id, U2.user_id " +
-                    "order by 3 desc, 1 asc, 2 asc)" +
-                    "where rownum <= " + num);
-    		
-    		ResultSet rst = stmt.executeQuery("select T.m1_id, T.m2_id, U1.first_name, U1.last_name, U1.year_of_birth, U2.first_name, U2.last_name, U2.year_of_birth, P.photo_id, P.album_id, A.album_name, P.photo_link " +
-                    "from top_n T, " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2, " + PhotosTable + " P, " + AlbumsTable + " A " +
-                    "where T.m1_id = U1.user_id and T.m2_id = U2.user_id and T.m1_id = T1.tag_subject_id and T.m2_id = T2.tag_subject_id and T1.tag_photo_id = T2.tag_photo_id and T1.tag_photo_id = P.photo_id and P.album_id = A.album_id " +
-                    "order by 1 asc, 2 asc");
-            Long boy1UserId = null;
-            Long boy2UserId = null;
-            MatchPair mp = null;
-            while (rst.next()) {
-                if (boy1UserId == null || (!boy1UserId.equals(rst.getLong(1)) && !boy2UserId.equals(rst.getLong(2)))) {
-                    if (mp != null) {
-                        results.add(mp);
-                    }
-                    boy1UserId = rst.getLong(1);
-                    String boy1FirstName = rst.getString(3);
-                    String boy1LastName = rst.getString(4);
-                    UserInfo u1 = new UserInfo(boy1UserId, boy1FirstName, boy1LastName);
-                    int boy1Year = rst.getInt(5);
-                    boy2UserId = rst.getLong(2);
-                    String boy2FirstName = rst.getString(6);
-                    String boy2LastName = rst.getString(7);
-                    UserInfo u2 = new UserInfo(boy2UserId, boy2FirstName, boy2LastName);
-                    int boy2Year = rst.getInt(8);
-                    mp = new MatchPair(u1, boy1Year, u2, boy2Year);
+            PreparedStatement stmt = statements.prepare(QueryId.MATCH_MAKER, "main", sql);
+            stmt.setInt(1, yearDiff);
+            stmt.setInt(2, yearDiff);
+            stmt.setInt(3, num);
+            
+            IdRows shared = new IdRows(5);
+            try (ResultSet rst = execute(QueryId.MATCH_MAKER, "main", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    shared.addRow(rst);
                 }
-
-                long sharedPhotoId = rst.getLong(9);
-                long sharedPhotoAlbumId = rst.getLong(10);
-                String sharedPhotoAlbumName = rst.getString(11);
-                String sharedPhotoLink = rst.getString(12);
-                PhotoInfo p = new PhotoInfo(sharedPhotoId, sharedPhotoAlbumId, sharedPhotoLink, sharedPhotoAlbumName);
-                mp.addSharedPhoto(p);
+                fetched(QueryId.MATCH_MAKER, "main", rows);
             }
-            if (mp != null) {
-                results.add(mp);
+            addMatchPairs(shared, results);
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        
+        return results;
+    }
+    
+    // Query 5, evaluated on the client: a MatchFinder ranks the pairs from one ordered scan of
+    // TagsTable, and only the IDs of the winners' shared photos are fetched, PAIR_BATCH_SIZE pairs per
+    // statement. Winners are fetched in (m1, m2) order, the order of the SQL output, and a winner
+    // none of whose photos joins to PhotosTable and AlbumsTable is left out, as the join does.
+    private FakebookArrayList<MatchPair> matchMakerInMemory(int num, int yearDiff) {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        try {
+            StatementRunner runner = runner(QueryId.MATCH_MAKER);
+            TopPairs top = MatchFinder.load(runner, UsersTable, FriendsTable).topPairs(runner, TagsTable, num, yearDiff);
+            long[][] winners = new long[top.size()][];
+            for (int i = 0; i < top.size(); i++) {
+                winners[i] = new long[] { top.first(i), top.second(i) };
+            }
+            Arrays.sort(winners, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            
+            StringBuilder sql = new StringBuilder("select T1.tag_subject_id, T2.tag_subject_id, U1.year_of_birth, U2.year_of_birth, P.photo_id " +
+                "from " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2, " + PhotosTable + " P, " + AlbumsTable + " A " +
+                "where (T1.tag_subject_id, T2.tag_subject_id) in ((?, ?)");
+            for (int i = 1; i < PAIR_BATCH_SIZE; i++) {
+                sql.append(", (?, ?)");
+            }
+            sql.append(") and U1.user_id = T1.tag_subject_id and U2.user_id = T2.tag_subject_id and T1.tag_photo_id = T2.tag_photo_id " +
+                "and T1.tag_photo_id = P.photo_id and P.album_id = A.album_id " +
+                "order by 1 asc, 2 asc, 5 asc");
+            PreparedStatement stmt = statements.prepare(QueryId.MATCH_MAKER, "photos", sql.toString());
+            
+            IdRows shared = new IdRows(5);
+            
+            for (int start = 0; start < winners.length; start += PAIR_BATCH_SIZE) {
+                for (int i = 0; i < PAIR_BATCH_SIZE; i++) {
+                    long[] pair = winners[Math.min(start + i, winners.length - 1)];
+                    stmt.setLong(2 * i + 1, pair[0]);
+                    stmt.setLong(2 * i + 2, pair[1]);
+                }
+                try (ResultSet rst = execute(QueryId.MATCH_MAKER, "photos", stmt)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        rows++;
+                        shared.addRow(rst);
+                    }
+                    fetched(QueryId.MATCH_MAKER, "photos", rows);
+                }
             }
-                        
-            stmt.executeUpdate("drop view top_n");
-            rst.close();
-            stmt.close();      
+            addMatchPairs(shared, results);
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
         }
         
         return results;
     }
     
+    // MODIFIES: results
+    // EFFECTS: adds one MatchPair per (m1, m2) group of <shared>, whose rows are
+    //          (m1, m2, m1's year of birth, m2's year of birth, shared photo) ordered by m1, m2,
+    //          resolving all the names, links and album names in one batched lookup per kind
+    private void addMatchPairs(IdRows shared, FakebookArrayList<MatchPair> results) throws SQLException {
+        Map<Long, UserInfo> users = fetchUsers(QueryId.MATCH_MAKER, shared.distinct(0, 1));
+        Map<Long, PhotoInfo> photos = fetchPhotos(QueryId.MATCH_MAKER, shared.distinct(4));
+        MatchPair mp = null;
+        for (int i = 0; i < shared.size(); i++) {
+            if (!shared.sameGroup(i, 2)) {
+                mp = new MatchPair(user(shared.get(i, 0), users), (int) shared.get(i, 2),
+                                   user(shared.get(i, 1), users), (int) shared.get(i, 3));
+                results.add(mp);
+            }
+            mp.addSharedPhoto(photos.get(shared.get(i, 4)));
+        }
+    }
+    
+    // EFFECTS: returns the (user, user, photo) rows of every photo in which both users of one of
+    //          <pairs> are tagged and whose album is in AlbumsTable, sorted, without looking the
+    //          users up: the shared photos of the winners of Query 5 on a database that may hold
+    //          the photos of users it does not hold
+    IdRows sharedPhotos(long[][] pairs) throws SQLException {
+        StringBuilder sql = new StringBuilder("select T1.tag_subject_id, T2.tag_subject_id, P.photo_id " +
+            "from " + TagsTable + " T1, " + TagsTable + " T2, " + PhotosTable + " P, " + AlbumsTable + " A " +
+            "where (T1.tag_subject_id, T2.tag_subject_id) in ((?, ?)");
+        for (int i = 1; i < PAIR_BATCH_SIZE; i++) {
+            sql.append(", (?, ?)");
+        }
+        sql.append(") and T1.tag_photo_id = T2.tag_photo_id and T1.tag_photo_id = P.photo_id and P.album_id = A.album_id");
+        PreparedStatement stmt = statements.prepare(QueryId.MATCH_MAKER, "sharedPhotos", sql.toString());
+        
+        IdRows shared = new IdRows(3);
+        for (int start = 0; start < pairs.length; start += PAIR_BATCH_SIZE) {
+            for (int i = 0; i < PAIR_BATCH_SIZE; i++) {
+                long[] pair = pairs[Math.min(start + i, pairs.length - 1)];
+                stmt.setLong(2 * i + 1, pair[0]);
+                stmt.setLong(2 * i + 2, pair[1]);
+            }
+            try (ResultSet rst = execute(QueryId.MATCH_MAKER, "sharedPhotos", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    shared.addRow(rst);
+                }
+                fetched(QueryId.MATCH_MAKER, "sharedPhotos", rows);
+            }
+        }
+        shared.sort();
+        return shared;
+    }
+    
     @Override
     // Query 6
     // -----------------------------------------------------------------------------------
@@ -394,9 +922,48 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) For each pair identified in (A), find the IDs, first names, and last names
     //            of all the two users' common friends
     public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        return suggestFriends(num, config.engine(QueryId.SUGGEST_FRIENDS));
+    }
+
+    // Query 6, evaluated with an explicitly chosen <engine>
+    public FakebookArrayList<UsersPair> suggestFriends(int num, QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return suggestFriendsSql(num);
+        }
+        FakebookArrayList<UsersPair> results = suggestFriendsInMemory(num);
+        if (config.crossCheck()) {
+            results = crossChecked(QueryId.SUGGEST_FRIENDS, results, suggestFriendsSql(num));
+        }
+        return results;
+    }
+
+    // Query 6, evaluated by the database
+    private FakebookArrayList<UsersPair> suggestFriendsSql(int num) {
         FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        // friends_2, friends_common and top_n2 are subquery factoring clauses of one statement with
+        // <num> as a bind variable, so no DDL runs per call and concurrent callers never collide
+        String sql = "with friends_2 as ( " +
+            "select F1.user1_id, F1.user2_id from " + FriendsTable + " F1 " +
+            "union select F2.user2_id, F2.user1_id from " + FriendsTable + " F2), " +
+            "friends_common as ( " +
+            "select F1.user1_id as u1_id, F2.user1_id as u2_id, F1.user2_id as u3_id " +
+            "from friends_2 F1, friends_2 F2 " +
+            "where F1.user1_id < F2.user1_id and F1.user2_id = F2.user2_id), " +
+            "top_n2 as ( " +
+            "select u1_id, u2_id, quant " +
+            "from (select C.u1_id, C.u2_id, count(C.u3_id) as quant " +
+            "from friends_common C " +
+            "where not exists (select * from " + FriendsTable + " F where F.user1_id = C.u1_id and F.user2_id = C.u2_id) " +
+            "group by C.u1_id, C.u2_id " +
+            "order by 3 desc, 1 asc, 2 asc) " +
+            "where rownum <= ?) " +
+            "select T.u1_id, T.u2_id, F.u3_id, T.quant " +
+            "from top_n2 T, friends_common F, " + UsersTable + " U1, " + UsersTable + " U2, " + UsersTable + " U3 " +
+            "where T.u1_id = F.u1_id and T.u2_id = F.u2_id and T.u1_id = U1.user_id and T.u2_id = U2.user_id and F.u3_id = U3.user_id " +
+            "order by 4 desc, 1 asc, 2 asc, 3 asc";
+        
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -407,72 +974,428 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 up.addSharedFriend(u3);
                 results.add(up);
             */
-            stmt.executeUpdate("create or replace view friends_2 as " +
-            "select F1.user1_id, F1.user2_id from " + FriendsTable + " F1 " +
-            "union select F2.user2_id, F2.user1_id from " + FriendsTable + " F2");
-            stmt.executeUpdate("create or replace view friends_common as " +
-                    "select F1.user1_id as u1_id, F2.user1_id as u2_id, F1.user2_id as u3_id " +
-                    "from friends_2 F1, friends_2 F2 " +
-                    "where F1.user1_id < F2.user1_id and F1.user2_id = F2.user2_id");
-            stmt.executeUpdate("create or replace view top_n2 as " +
-                    "select u1_id, u2_id, quant " +
-                    "from (select u1_id, u2_id, count(u3_id) as quant " +
-                    "from friends_common " +
-                    "where not exists (select * from " + FriendsTable + " F where F.user1_id = u1_id and F.user2_id = u2_id) " +
-                    "group by u1_id, u2_id " +
-                    "order by 3 desc, 1 asc, 2 asc) " +
-                    " fetch first "+num+" rows only");
-    
-            ResultSet rst = stmt.executeQuery("select T.u1_id, T.u2_id, F.u3_id, U1.first_name, U1.last_name, U2.first_name, U2.last_name, U3.first_name, U3.last_name, T.quant " +
-                    "from top_n2 T, friends_common F, " + UsersTable + " U1, " + UsersTable + " U2, " + UsersTable + " U3 " +
-                    "where T.u1_id = F.u1_id and T.u2_id = F.u2_id and T.u1_id = U1.user_id and T.u2_id = U2.user_id and F.u3_id = U3.user_id " +
-                    "order by 10 desc, 1 asc, 2 asc, 3 asc ");
+            PreparedStatement stmt = statements.prepare(QueryId.SUGGEST_FRIENDS, "main", sql);
+            stmt.setInt(1, num);
             
-            Long user1_id = null;
-            Long user2_id = null;
+            // The statement returns (pair, common friend) IDs only; every distinct user is named
+            // once afterwards
+            IdRows common = new IdRows(3);
+            try (ResultSet rst = execute(QueryId.SUGGEST_FRIENDS, "main", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    common.addRow(rst);
+                }
+                fetched(QueryId.SUGGEST_FRIENDS, "main", rows);
+            }
+            
+            Map<Long, UserInfo> users = fetchUsers(QueryId.SUGGEST_FRIENDS, common.distinct(0, 1, 2));
             UsersPair p = null;
-            while (rst.next()) {
-                if (user1_id == null || (!user1_id.equals(rst.getLong(1)) || !user2_id.equals(rst.getLong(2)))) {
-                    if (p != null) {
-                        results.add(p);
-                    }
-                    user1_id = rst.getLong(1);
-                    String user1FirstName = rst.getNString(4);
-                    String user1LastName = rst.getNString(5);
-                    UserInfo u1 = new UserInfo(user1_id, user1FirstName, user1LastName);
-                    user2_id = rst.getLong(2);
-                    String user2FirstName = rst.getNString(6);
-                    String user2LastName = rst.getNString(7);
-                    UserInfo u2 = new UserInfo(user2_id, user2FirstName, user2LastName);
-                    p = new UsersPair(u1, u2);
-                }
-                UserInfo u3 = new UserInfo(rst.getLong(3), rst.getNString(8), rst.getNString(9));
-                p.addSharedFriend(u3);
-            }
-            if (p != null) {
-                results.add(p);
+            for (int i = 0; i < common.size(); i++) {
+                if (!common.sameGroup(i, 2)) {
+                    p = new UsersPair(user(common.get(i, 0), users), user(common.get(i, 1), users));
+                    results.add(p);
+                }
+                p.addSharedFriend(user(common.get(i, 2), users));
             }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        
+        return results;
+    }
+
+    // Query 6, evaluated over the in-memory FriendGraph
+    // -----------------------------------------------------------------------------------
+    // The Friends table is loaded once into a FriendGraph. For every user u, the number of common
+    // friends with each user w > u is counted by walking the paths u - c - w, and the pairs that
+    // are not already friends are ranked in a bounded heap of size <num>. Only the winning pairs
+    // have their common friends listed (by merging sorted adjacency lists) and their names fetched.
+    private FakebookArrayList<UsersPair> suggestFriendsInMemory(int num) {
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        
+        try {
+            FriendGraph graph = friendGraph();
+            TopPairs top = graph.topCommonFriendPairs(num);
             
-            stmt.executeUpdate("drop view top_n2");
-            stmt.executeUpdate("drop view friends_common");
-            stmt.executeUpdate("drop view friends_2");
-            rst.close();
-            stmt.close();
-        }	
+            long[][] common = new long[top.size()][];
+            Set<Long> userIds = new HashSet<Long>();
+            for (int i = 0; i < top.size(); i++) {
+                common[i] = graph.commonFriends(top.first(i), top.second(i));
+                userIds.add(top.first(i));
+                userIds.add(top.second(i));
+                for (long friend : common[i]) {
+                    userIds.add(friend);
+                }
+            }
+            
+            Map<Long, UserInfo> users = fetchUsers(QueryId.SUGGEST_FRIENDS, userIds);
+            for (int i = 0; i < top.size(); i++) {
+                UsersPair p = new UsersPair(user(top.first(i), users), user(top.second(i), users));
+                for (long friend : common[i]) {
+                    p.addSharedFriend(user(friend, users));
+                }
+                results.add(p);
+            }
+        }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
         }
         
         return results;
     }
     
+    // The cache of prepared statements kept open on this oracle's connection
+    public StatementCache statementCache() {
+        return statements;
+    }
+    
+    // The state this oracle shares with the other oracles built on it
+    public FakebookOracleState state() {
+        return state;
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: closes every cached statement if this oracle created its own state, and otherwise
+    //          the statements it prepared on its connection (FakebookOracleState.release); what
+    //          a shared state has observed and loaded stays for the other oracles. The
+    //          connection itself is owned by the caller and stays open.
+    @Override
+    public void close() {
+        if (ownsState) {
+            state.close();
+        }
+        else {
+            state.release(oracle);
+        }
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: may be called from any thread: cancels the statement this oracle is executing or
+    //          reading from and makes every statement it would execute afterwards fail, so the
+    //          running query gives up the connection as soon as the database abandons the
+    //          statement and answers with its sentinel. The oracle cannot run queries afterwards.
+    //          The loads of the in-memory engines run through the same hook (StatementRunner)
+    //          and also stop at their next fetch batch; the client-side computation of a query
+    //          that has finished loading runs to its end.
+    public void cancel() {
+        cancelled = true;
+        PreparedStatement stmt = running;
+        if (stmt != null) {
+            try {
+                stmt.cancel();
+            }
+            catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: discards the in-memory copy of the Friends table so that the next in-memory
+    //          evaluation reloads it
+    public void refreshFriendGraph() {
+        state.refreshFriendGraph();
+    }
+    
+    // EFFECTS: returns the birth-month and event-state counts used by the in-memory engines of
+    //          Query 0 and Query 7, loading them on first use, as part of Query 0, into the state
+    //          of this oracle. Code that changes Users, Events or Cities keeps them current by
+    //          reporting each change as FakebookOracleState describes.
+    public IncrementalAggregates aggregates() throws SQLException {
+        return aggregates(QueryId.MONTH_OF_BIRTH_INFO);
+    }
+    
+    // The maintained aggregates, loaded on first use as part of <query>
+    private IncrementalAggregates aggregates(QueryId query) throws SQLException {
+        return state.aggregates(Collections.singletonList(runner(query)));
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: discards the maintained aggregates so that the next in-memory evaluation of
+    //          Query 0 or Query 7 reloads them, e.g. after a bulk load that reported no deltas
+    public void refreshAggregates() {
+        state.refreshAggregates();
+    }
+    
+    // EFFECTS: returns the per-photo tag counts used by the in-memory engine of Query 4, loading
+    //          them on first use into the state of this oracle. Code that inserts or deletes Tags
+    //          rows keeps them current by reporting each change as FakebookOracleState describes.
+    public PhotoTagCounts tagCounts() throws SQLException {
+        return state.tagCounts(Collections.singletonList(runner(QueryId.PHOTOS_WITH_MOST_TAGS)));
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: discards the maintained tag counts so that the next in-memory evaluation of
+    //          Query 4 reloads them
+    public void refreshTagCounts() {
+        state.refreshTagCounts();
+    }
+    
+    // The in-memory copy of the Friends table, loaded on first use
+    private FriendGraph friendGraph() throws SQLException {
+        return state.friendGraph(Collections.singletonList(runner(QueryId.SUGGEST_FRIENDS)));
+    }
+    
+    // EFFECTS: returns the UserInfo of each of <userIds> that is in UsersTable. Each user is
+    //          built once, so every result of <query> that mentions it shares one instance.
+    Map<Long, UserInfo> fetchUsers(QueryId query, Collection<Long> userIds) throws SQLException {
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        fetchByIds(query, "userInfo", "select user_id, first_name, last_name from " + UsersTable + " where user_id in (", userIds,
+            rst -> users.put(rst.getLong(1), new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3))));
+        return users;
+    }
+    
+    // EFFECTS: returns the PhotoInfo, album name included, of each of <photoIds> that is in
+    //          PhotosTable and whose album is in AlbumsTable, one shared instance per photo
+    Map<Long, PhotoInfo> fetchPhotos(QueryId query, Collection<Long> photoIds) throws SQLException {
+        Map<Long, PhotoInfo> photos = new HashMap<Long, PhotoInfo>();
+        fetchByIds(query, "photoInfo", "select P.photo_id, P.album_id, A.album_name, P.photo_link " +
+            "from " + PhotosTable + " P, " + AlbumsTable + " A where P.album_id = A.album_id and P.photo_id in (", photoIds,
+            rst -> photos.put(rst.getLong(1), new PhotoInfo(rst.getLong(1), rst.getLong(2), rst.getString(4), rst.getString(3))));
+        return photos;
+    }
+    
+    // EFFECTS: passes each row of <sqlPrefix> followed by an IN list of <ids> to <reader>. The IDs
+    //          are bound in batches of LOOKUP_BATCH_SIZE bind variables, the last batch padded so
+    //          that step <step> of <query> uses only one statement shape.
+    private void fetchByIds(QueryId query, String step, String sqlPrefix, Collection<Long> ids, RowReader reader) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        
+        StringBuilder sql = new StringBuilder(sqlPrefix).append("?");
+        for (int i = 1; i < LOOKUP_BATCH_SIZE; i++) {
+            sql.append(", ?");
+        }
+        sql.append(")");
+        
+        PreparedStatement stmt = statements.prepare(query, step, sql.toString());
+        Iterator<Long> it = ids.iterator();
+        while (it.hasNext()) {
+            long last = 0;
+            for (int i = 1; i <= LOOKUP_BATCH_SIZE; i++) {
+                if (it.hasNext()) {
+                    last = it.next();
+                }
+                stmt.setLong(i, last);
+            }
+            try (ResultSet rst = execute(query, step, stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    reader.read(rst);
+                }
+                fetched(query, step, rows);
+            }
+        }
+    }
+    
+    // EFFECTS: returns the UserInfo of <userId> from <users>, or one without names if the user
+    //          was not found
+    private UserInfo user(long userId, Map<Long, UserInfo> users) {
+        UserInfo user = users.get(userId);
+        return user == null ? new UserInfo(userId, null, null) : user;
+    }
+    
+    // EFFECTS: splits the user_id values of UsersTable into at most <partitions> ranges of equal
+    //          width and returns them in ascending order as { from1, to1, from2, to2, ... }, both
+    //          ends inclusive; returns no ranges if UsersTable is empty
+    long[] userIdRanges(QueryId query, int partitions) throws SQLException {
+        PreparedStatement stmt = statements.prepare(query, "bounds", "select min(user_id), max(user_id) from " + UsersTable);
+        long min;
+        long max;
+        try (ResultSet rst = execute(query, "bounds", stmt)) {
+            if (!rst.next()) {
+                return new long[0];
+            }
+            min = rst.getLong(1);
+            max = rst.getLong(2);
+            if (rst.wasNull()) {
+                return new long[0];
+            }
+            fetched(query, "bounds", 1);
+        }
+        
+        // Ranges are width wide, the last one possibly narrower; (max - min) overflows only when
+        // the IDs spread over the whole long range, which is scanned in one piece
+        long width = max - min < 0 ? -1 : (max - min) / partitions + 1;
+        long[] ranges = new long[2 * partitions];
+        int count = 0;
+        for (long from = min; ; from = ranges[2 * count - 1] + 1) {
+            long to = width < 0 || max - from < width ? max : from + width - 1;
+            ranges[2 * count] = from;
+            ranges[2 * count + 1] = to;
+            count++;
+            if (to == max) {
+                break;
+            }
+        }
+        return Arrays.copyOf(ranges, 2 * count);
+    }
+    
+    // EFFECTS: runs <sql>, which has the ends of a user_id range as its two bind variables, as
+    //          step "range" of <query> and maps every row with <mapper>
+    private <T> FakebookArrayList<T> rangeScan(QueryId query, String sql, long fromUserId, long toUserId, String separator, ResultSetStream.RowMapper<T> mapper) throws SQLException {
+        FakebookArrayList<T> results = new FakebookArrayList<T>(separator);
+        PreparedStatement stmt = statements.prepare(query, "range", sql);
+        stmt.setLong(1, fromUserId);
+        stmt.setLong(2, toUserId);
+        try (ResultSet rst = execute(query, "range", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                results.add(mapper.map(rst));
+            }
+            fetched(query, "range", rows);
+        }
+        return results;
+    }
+    
+    // One row of a batched lookup, consumed as it is read
+    private interface RowReader {
+        void read(ResultSet rst) throws SQLException;
+    }
+    
+    // MODIFIES: stmt
+    // EFFECTS: executes the cached statement for step <step> of <query> with the fetch size the
+    //          FetchSizeAdvisor picks for it and the query's timeout, timing the execution for
+    //          QueryMetrics if this call is measured; fails at once if this oracle was cancelled
+    private ResultSet execute(QueryId query, String step, PreparedStatement stmt) throws SQLException {
+        return execute(query, step, stmt, FetchSizeAdvisor.DEFAULT_FETCH_SIZE);
+    }
+    
+    // MODIFIES: stmt
+    // EFFECTS: as execute(<query>, <step>, <stmt>), starting from a fetch size of
+    //          <defaultFetchSize> until the FetchSizeAdvisor has seen the step run
+    private ResultSet execute(QueryId query, String step, PreparedStatement stmt, int defaultFetchSize) throws SQLException {
+        return execute(query, stmt, fetchSizes.fetchSize(query, step, defaultFetchSize));
+    }
+    
+    // MODIFIES: stmt
+    // EFFECTS: executes <stmt> as part of <query>, fetching <fetchSize> rows per round trip, with
+    //          the query's timeout and as the statement cancel() cancels, timing the execution
+    //          for QueryMetrics if this call is measured; fails at once if this oracle was
+    //          cancelled
+    private ResultSet execute(QueryId query, PreparedStatement stmt, int fetchSize) throws SQLException {
+        stmt.setFetchSize(fetchSize);
+        long timeoutMillis = config.queryTimeoutMillis(query);
+        stmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (timeoutMillis + 999) / 1000));
+        running = stmt;
+        checkCancelled(query);
+        QueryMetrics.Call call = QueryMetrics.current();
+        if (call == null) {
+            return stmt.executeQuery();
+        }
+        long start = System.nanoTime();
+        ResultSet rst = stmt.executeQuery();
+        call.executed(System.nanoTime() - start, fetchSize);
+        return rst;
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: reports the number of rows step <step> of <query> returned, so later executions
+    //          fetch them in fewer round trips, and ends the fetch timing of a measured call
+    private void fetched(QueryId query, String step, int rows) {
+        fetchSizes.record(query, step, rows);
+        fetched(rows);
+    }
+    
+    // MODIFIES: this
+    // EFFECTS: reports that the result of the last execution has been read, <rows> rows, which
+    //          ends the fetch timing of a measured call
+    private void fetched(int rows) {
+        running = null;
+        QueryMetrics.Call call = QueryMetrics.current();
+        if (call != null) {
+            call.fetched(rows);
+        }
+    }
+    
+    // EFFECTS: fails if this oracle was cancelled while evaluating <query>
+    private void checkCancelled(QueryId query) throws SQLException {
+        if (cancelled) {
+            throw new SQLException(query.methodName() + " was cancelled", "HY008");
+        }
+    }
+    
+    // EFFECTS: returns the hook through which the loads of the in-memory engines and the streams
+    //          run their statements on this oracle's connection as part of <query>
+    StatementRunner runner(QueryId query) {
+        return new QueryRunner(query);
+    }
+    
+    // Runs statements for one query through execute() and fetched(), without the
+    // FetchSizeAdvisor: a load knows its fetch size better than the advisor, whose hints are
+    // about the query's own results
+    private final class QueryRunner implements StatementRunner {
+        // [Constructor]
+        QueryRunner(QueryId query) {
+            this.query = query;
+        }
+        
+        @Override
+        public Connection connection() {
+            return oracle;
+        }
+        
+        @Override
+        public ResultSet execute(PreparedStatement stmt, int fetchSize) throws SQLException {
+            return StudentFakebookOracle.this.execute(query, stmt, fetchSize);
+        }
+        
+        @Override
+        public void fetched(int rows) {
+            StudentFakebookOracle.this.fetched(rows);
+        }
+        
+        @Override
+        public void checkCancelled() throws SQLException {
+            StudentFakebookOracle.this.checkCancelled(query);
+        }
+        
+        // Member Variables
+        private final QueryId query;
+    }
+    
+    // EFFECTS: compares the answer of a non-SQL engine with the SQL answer; on a mismatch the
+    //          difference is reported on System.err and the SQL answer is returned instead
+    private <T> T crossChecked(QueryId query, T candidate, T reference) {
+        String got = String.valueOf(candidate);
+        String expected = String.valueOf(reference);
+        if (got.equals(expected)) {
+            return candidate;
+        }
+        System.err.println("Cross-check failed for " + query.methodName() + ":\n--- expected\n" + expected + "\n--- got\n" + got);
+        return reference;
+    }
+    
     @Override
     // Query 7
     // -----------------------------------------------------------------------------------
     // GOALS: (A) Find the name of the state or states in which the most events are held
     //        (B) Find the number of events held in the states identified in (A)
+    // States are listed by name, so ties are reported in the same order by every engine.
     public EventStateInfo findEventStates() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        return findEventStates(config.engine(QueryId.EVENT_STATES));
+    }
+
+    // Query 7, evaluated with an explicitly chosen <engine>
+    public EventStateInfo findEventStates(QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return findEventStatesSql();
+        }
+        EventStateInfo info = findEventStatesInMemory();
+        if (config.crossCheck()) {
+            info = crossChecked(QueryId.EVENT_STATES, info, findEventStatesSql());
+        }
+        return info;
+    }
+
+    // Query 7, evaluated by the database
+    private EventStateInfo findEventStatesSql() {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -482,27 +1405,72 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 info.addState("New Hampshire");
                 return info;
             */
-	        ResultSet rst = stmt.executeQuery("select distinct state_name, count(*) " +
-        			"from " + EventsTable + " E left join " + CitiesTable + " C on E.event_city_id = C.city_id " +
-        			"where state_name is not null " +
+            PreparedStatement stmt = statements.prepare(QueryId.EVENT_STATES, "main", "select distinct state_name, count(*) " +
+                    "from " + EventsTable + " E left join " + CitiesTable + " C on E.event_city_id = C.city_id " +
+                    "where state_name is not null " +
                     "group by state_name " +
-                    "having count(*) = (select max(count(*)) from " + EventsTable + " E left join " + CitiesTable + " C on E.event_city_id = C.city_id where state_name is not null group by state_name)");
-        	
+                    "having count(*) = (select max(count(*)) from " + EventsTable + " E left join " + CitiesTable + " C on E.event_city_id = C.city_id where state_name is not null group by state_name) " +
+                    "order by state_name asc");
+            
             EventStateInfo info = new EventStateInfo(-1);
-            while (rst.next()) {
-                if(rst.isFirst()) {
-                    info = new EventStateInfo(rst.getInt(2));
+            try (ResultSet rst = execute(QueryId.EVENT_STATES, "main", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    if (rows == 1) {
+                        info = new EventStateInfo(rst.getInt(2));
+                    }
+                    info.addState(rst.getString(1));
                 }
-        		info.addState(rst.getString(1));
-
+                fetched(QueryId.EVENT_STATES, "main", rows);
             }
             return info;                // placeholder for compilation
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
             return new EventStateInfo(-1);
         }
     }
+
+    // Query 7, read off the maintained IncrementalAggregates instead of joining EventsTable to
+    // CitiesTable and grouping by state
+    private EventStateInfo findEventStatesInMemory() {
+        try {
+            IncrementalAggregates aggregates = aggregates(QueryId.EVENT_STATES);
+            synchronized (aggregates) {
+                EventStateInfo info = new EventStateInfo((int) aggregates.mostEventsInAState());
+                for (String state : aggregates.statesWithMostEvents()) {
+                    info.addState(state);
+                }
+                return info;
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            return new EventStateInfo(-1);
+        }
+    }
+    
+    // EFFECTS: returns the number of events held in each state that has any, keyed by state name:
+    //          the groups Query 7 picks its states from, for a caller that adds them up with
+    //          the groups of other databases
+    Map<String, Integer> eventCountsByState() throws SQLException {
+        PreparedStatement stmt = statements.prepare(QueryId.EVENT_STATES, "stateCounts", "select state_name, count(*) " +
+                "from " + EventsTable + " E left join " + CitiesTable + " C on E.event_city_id = C.city_id " +
+                "where state_name is not null " +
+                "group by state_name");
+        
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        try (ResultSet rst = execute(QueryId.EVENT_STATES, "stateCounts", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                counts.put(rst.getString(1), rst.getInt(2));
+            }
+            fetched(QueryId.EVENT_STATES, "stateCounts", rows);
+        }
+        return counts;
+    }
     
     @Override
     // Query 8
@@ -512,7 +1480,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) Find the ID, first name, and last name of the youngest friend of the user
     //            with User ID <userID>
     public AgeInfo findAgeInfo(long userID) throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -522,39 +1490,152 @@ public final class StudentFakebookOracle extends FakebookOracle {
             */
             UserInfo old = new UserInfo(-1, "ERROR", "ERROR");
             UserInfo young = new UserInfo(-1, "ERROR", "ERROR");
-            ResultSet rst = stmt.executeQuery("select * " +
-        			"from (select user_id, first_name, last_name " +
+            PreparedStatement stmt = statements.prepare(QueryId.AGE_INFO, "oldest", "select * " +
+                    "from (select user_id, first_name, last_name " +
                     "from " + UsersTable +
-                    " where user_id in (select F1.user1_id from " + FriendsTable + " F1 where F1.user2_id = " + userID + " union select F2.user2_id from " + FriendsTable + " F2 where F2.user1_id = " + userID + ") " +
+                    " where user_id in (select F1.user1_id from " + FriendsTable + " F1 where F1.user2_id = ? union select F2.user2_id from " + FriendsTable + " F2 where F2.user1_id = ?) " +
                     " order by year_of_birth asc, month_of_birth asc, day_of_birth asc, user_id desc) " +
                     "where rownum <= 1");
-        	while (rst.next()) {
-        		Long uid = rst.getLong(1);
-                String firstName = rst.getString(2);
-                String lastName = rst.getString(3);
-                old = new UserInfo(uid, firstName, lastName);
-            }
-        	
-        	rst = stmt.executeQuery("select * " +
-        			"from (select user_id, first_name, last_name " +
+            stmt.setLong(1, userID);
+            stmt.setLong(2, userID);
+            try (ResultSet rst = execute(QueryId.AGE_INFO, "oldest", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    long uid = rst.getLong(1);
+                    String firstName = rst.getString(2);
+                    String lastName = rst.getString(3);
+                    old = new UserInfo(uid, firstName, lastName);
+                }
+                fetched(QueryId.AGE_INFO, "oldest", rows);
+            }
+            
+            stmt = statements.prepare(QueryId.AGE_INFO, "youngest", "select * " +
+                    "from (select user_id, first_name, last_name " +
                     "from " + UsersTable +
-                    " where user_id in (select F1.user1_id from " + FriendsTable + " F1 where F1.user2_id = " + userID + " union select F2.user2_id from " + FriendsTable + " F2 where F2.user1_id = " + userID + ") " +
+                    " where user_id in (select F1.user1_id from " + FriendsTable + " F1 where F1.user2_id = ? union select F2.user2_id from " + FriendsTable + " F2 where F2.user1_id = ?) " +
                     " order by year_of_birth desc, month_of_birth desc, day_of_birth desc, user_id asc) " +
                     "where rownum <= 1");
-        	while (rst.next()) {
-        		Long uid = rst.getLong(1);
-                String firstName = rst.getString(2);
-                String lastName = rst.getString(3);
-                young = new UserInfo(uid, firstName, lastName);
+            stmt.setLong(1, userID);
+            stmt.setLong(2, userID);
+            try (ResultSet rst = execute(QueryId.AGE_INFO, "youngest", stmt)) {
+                int rows = 0;
+                while (rst.next()) {
+                    rows++;
+                    long uid = rst.getLong(1);
+                    String firstName = rst.getString(2);
+                    String lastName = rst.getString(3);
+                    young = new UserInfo(uid, firstName, lastName);
+                }
+                fetched(QueryId.AGE_INFO, "youngest", rows);
             }
            return new AgeInfo(old, young);
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
             return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
         }
     }
     
+    // Query 8, batched
+    // -----------------------------------------------------------------------------------
+    // GOALS: (A) For each user in <userIDs>, find the same oldest and youngest friend that
+    //            findAgeInfo(long) would find, in one round trip per batch of users
+    //
+    // Both friends of every user in a batch come from a single statement: row_number() ranks
+    // each user's friends once in the "oldest" order and once in the "youngest" order, and only
+    // the rows ranked first are returned. Large ID lists are split into batches of
+    // AGE_BATCH_SIZE users; the last batch is padded by repeating its final ID so that every
+    // batch executes the same cached statement. Users without friends map to the same ERROR
+    // placeholders as findAgeInfo(long).
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, UserInfo> oldest = new HashMap<Long, UserInfo>();
+        Map<Long, UserInfo> youngest = new HashMap<Long, UserInfo>();
+        
+        try {
+            StringBuilder ids = new StringBuilder("?");
+            for (int i = 1; i < AGE_BATCH_SIZE; i++) {
+                ids.append(", ?");
+            }
+            PreparedStatement stmt = statements.prepare(QueryId.AGE_INFO, "batch", "select subject_id, user_id, first_name, last_name, old_rank, young_rank " +
+                    "from (select P.subject_id, U.user_id, U.first_name, U.last_name, " +
+                    "row_number() over (partition by P.subject_id order by U.year_of_birth asc, U.month_of_birth asc, U.day_of_birth asc, U.user_id desc) as old_rank, " +
+                    "row_number() over (partition by P.subject_id order by U.year_of_birth desc, U.month_of_birth desc, U.day_of_birth desc, U.user_id asc) as young_rank " +
+                    "from (select F1.user2_id as subject_id, F1.user1_id as friend_id from " + FriendsTable + " F1 where F1.user2_id in (" + ids + ") " +
+                    "union select F2.user1_id, F2.user2_id from " + FriendsTable + " F2 where F2.user1_id in (" + ids + ")) P, " + UsersTable + " U " +
+                    "where P.friend_id = U.user_id) " +
+                    "where old_rank = 1 or young_rank = 1");
+            
+            for (int start = 0; start < userIDs.length; start += AGE_BATCH_SIZE) {
+                for (int i = 0; i < AGE_BATCH_SIZE; i++) {
+                    long userID = userIDs[Math.min(start + i, userIDs.length - 1)];
+                    stmt.setLong(i + 1, userID);
+                    stmt.setLong(AGE_BATCH_SIZE + i + 1, userID);
+                }
+                try (ResultSet rst = execute(QueryId.AGE_INFO, "batch", stmt)) {
+                    int rows = 0;
+                    while (rst.next()) {
+                        rows++;
+                        long subject = rst.getLong(1);
+                        UserInfo friend = new UserInfo(rst.getLong(2), rst.getString(3), rst.getString(4));
+                        if (rst.getInt(5) == 1) {
+                            oldest.put(subject, friend);
+                        }
+                        if (rst.getInt(6) == 1) {
+                            youngest.put(subject, friend);
+                        }
+                    }
+                    fetched(QueryId.AGE_INFO, "batch", rows);
+                }
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+            oldest.clear();
+            youngest.clear();
+        }
+        
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        for (long userID : userIDs) {
+            UserInfo old = oldest.get(userID);
+            UserInfo young = youngest.get(userID);
+            results.put(userID, new AgeInfo(old != null ? old : new UserInfo(-1, "ERROR", "ERROR"),
+                                            young != null ? young : new UserInfo(-1, "ERROR", "ERROR")));
+        }
+        return results;
+    }
+    
+    // EFFECTS: returns the IDs of the users in a Friends row with user <userID>, whether or not
+    //          they are in UsersTable
+    Set<Long> friendIds(long userID) throws SQLException {
+        PreparedStatement stmt = statements.prepare(QueryId.AGE_INFO, "friends",
+            "select F1.user1_id from " + FriendsTable + " F1 where F1.user2_id = ? union select F2.user2_id from " + FriendsTable + " F2 where F2.user1_id = ?");
+        stmt.setLong(1, userID);
+        stmt.setLong(2, userID);
+        
+        Set<Long> friends = new HashSet<Long>();
+        try (ResultSet rst = execute(QueryId.AGE_INFO, "friends", stmt)) {
+            int rows = 0;
+            while (rst.next()) {
+                rows++;
+                friends.add(rst.getLong(1));
+            }
+            fetched(QueryId.AGE_INFO, "friends", rows);
+        }
+        return friends;
+    }
+    
+    // EFFECTS: returns a (user, year, month, day of birth) row for each of <userIds> that is in
+    //          UsersTable, in no particular order, with a missing date part read as
+    //          Long.MAX_VALUE so that rows compare the way Oracle sorts NULLs (last when
+    //          ascending, first when descending)
+    IdRows birthDates(Collection<Long> userIds) throws SQLException {
+        IdRows dates = new IdRows(4);
+        fetchByIds(QueryId.AGE_INFO, "birthDates", "select user_id, year_of_birth, month_of_birth, day_of_birth from " + UsersTable + " where user_id in (", userIds,
+            rst -> dates.addRow(rst, Long.MAX_VALUE));
+        return dates;
+    }
+    
     @Override
     // Query 9
     // -----------------------------------------------------------------------------------
@@ -564,9 +1645,26 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //              (iii) are friends
     //              (iv) less than 10 birth years apart
     public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return findPotentialSiblings(config.engine(QueryId.POTENTIAL_SIBLINGS));
+    }
+
+    // Query 9, evaluated with an explicitly chosen <engine>
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings(QueryEngine engine) throws SQLException {
+        if (engine == QueryEngine.SQL) {
+            return findPotentialSiblingsSql();
+        }
+        FakebookArrayList<SiblingInfo> results = findPotentialSiblingsInMemory();
+        if (config.crossCheck()) {
+            results = crossChecked(QueryId.POTENTIAL_SIBLINGS, results, findPotentialSiblingsSql());
+        }
+        return results;
+    }
+
+    // Query 9, evaluated by the database
+    private FakebookArrayList<SiblingInfo> findPotentialSiblingsSql() {
         FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -575,28 +1673,103 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 SiblingInfo si = new SiblingInfo(u1, u2);
                 results.add(si);
             */
-            ResultSet rst = stmt.executeQuery("select U1.user_id, U1.first_name, U1.last_name, U2.user_id, U2.first_name, U2.last_name " +
-                    "from " + UsersTable + " U1, " + UsersTable + " U2, " + HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 " +
-                    "where U1.user_id < U2.user_id and U1.last_name = U2.last_name and U1.user_id = H1.user_id and U2.user_id = H2.user_id and H1.hometown_city_id = H2.hometown_city_id " +
-                    "and exists(select * from " + FriendsTable + " F where (F.user1_id = U1.user_id and F.user2_id = U2.user_id) or (F.user1_id = U2.user_id and F.user2_id = U1.user_id)) " +
-                    "and U1.year_of_birth - U2.year_of_birth >= -10 and U2.year_of_birth - U1.year_of_birth >= -10 " +
-                    "order by U1.user_id asc, U2.user_id asc");
-        	
-        	while (rst.next()) {
-        		Long user1_id = rst.getLong(1);
-                String user1FirstName = rst.getString(2);
-                String user1LastName = rst.getString(3);
-                Long user2_id = rst.getLong(4);
-                String user2FirstName = rst.getString(5);
-                String user2LastName = rst.getString(6);
-                UserInfo u1 = new UserInfo(user1_id, user1FirstName, user1LastName);
-                UserInfo u2 = new UserInfo(user2_id, user2FirstName, user2LastName);
-                SiblingInfo s = new SiblingInfo(u1,u2);
-                results.add(s);
-            }  
+            PreparedStatement stmt = statements.prepare(QueryId.POTENTIAL_SIBLINGS, "main", potentialSiblingsQuery());
+            try (ResultSet rst = execute(QueryId.POTENTIAL_SIBLINGS, "main", stmt)) {
+                int rows = 0;
+                SiblingRows siblingRows = new SiblingRows();
+                while (rst.next()) {
+                    rows++;
+                    results.add(siblingRows.map(rst));
+                }
+                fetched(QueryId.POTENTIAL_SIBLINGS, "main", rows);
+            }
+        }
+        catch (SQLException e) {
+            QueryFailure.report(e);
+        }
+        
+        return results;
+    }
+    
+    // Query 9, streamed
+    // -----------------------------------------------------------------------------------
+    // Same rows as the SQL evaluation of findPotentialSiblings(), fetched lazily through a
+    // forward-only cursor. The stream must be closed.
+    public Stream<SiblingInfo> streamPotentialSiblings() throws SQLException {
+        return ResultSetStream.of(runner(QueryId.POTENTIAL_SIBLINGS), potentialSiblingsQuery(), fetchSizes.fetchSize(QueryId.POTENTIAL_SIBLINGS, "stream", SCAN_FETCH_SIZE), new SiblingRows());
+    }
+    
+    // Query 9, pushing each row to <sink> as it is fetched
+    public void findPotentialSiblings(Consumer<? super SiblingInfo> sink) throws SQLException {
+        ResultSetStream.drain(streamPotentialSiblings(), sink);
+    }
+    
+    // Query 9 through SQL, restricted to the pairs with <fromUserId> <= U1.user_id <= <toUserId>:
+    // one partition of the range-partitioned scan of PooledFakebookOracle
+    FakebookArrayList<SiblingInfo> findPotentialSiblings(long fromUserId, long toUserId) throws SQLException {
+        return rangeScan(QueryId.POTENTIAL_SIBLINGS, potentialSiblingsQuery("and U1.user_id between ? and ? "), fromUserId, toUserId, "\n", new SiblingRows());
+    }
+    
+    private String potentialSiblingsQuery() {
+        return potentialSiblingsQuery("");
+    }
+    
+    private String potentialSiblingsQuery(String filter) {
+        return "select U1.user_id, U1.first_name, U1.last_name, U2.user_id, U2.first_name, U2.last_name " +
+                "from " + UsersTable + " U1, " + UsersTable + " U2, " + HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 " +
+                "where U1.user_id < U2.user_id and U1.last_name = U2.last_name and U1.user_id = H1.user_id and U2.user_id = H2.user_id and H1.hometown_city_id = H2.hometown_city_id " +
+                "and exists(select * from " + FriendsTable + " F where (F.user1_id = U1.user_id and F.user2_id = U2.user_id) or (F.user1_id = U2.user_id and F.user2_id = U1.user_id)) " +
+                "and U1.year_of_birth - U2.year_of_birth >= -10 and U2.year_of_birth - U1.year_of_birth >= -10 " +
+                filter + "order by U1.user_id asc, U2.user_id asc";
+    }
+    
+    // Maps (user1_id, first_name, last_name, user2_id, first_name, last_name) rows ordered by
+    // user1_id. Consecutive rows of the same first user share one UserInfo, whose names are read
+    // only once; one instance maps the rows of one result set.
+    private final class SiblingRows implements ResultSetStream.RowMapper<SiblingInfo> {
+        @Override
+        public SiblingInfo map(ResultSet rst) throws SQLException {
+            long user1Id = rst.getLong(1);
+            if (user1 == null || user1Id != lastUser1Id) {
+                user1 = new UserInfo(user1Id, rst.getString(2), rst.getString(3));
+                lastUser1Id = user1Id;
+            }
+            UserInfo u2 = new UserInfo(rst.getLong(4), rst.getString(5), rst.getString(6));
+            return new SiblingInfo(user1, u2);
+        }
+        
+        // Member Variables
+        private long lastUser1Id;
+        private UserInfo user1;
+    }
+    
+    // Query 9, evaluated as a client-side hash join
+    // -----------------------------------------------------------------------------------
+    // The SQL path self-joins Users and Hometown cities and then runs a correlated EXISTS with an
+    // OR over Friends for every candidate pair, which defeats index use. Here SiblingFinder
+    // buckets the users by (last name, hometown) and tests friendship against an in-memory pair
+    // set, processing the buckets in parallel on the common ForkJoinPool (its size follows
+    // -Djava.util.concurrent.ForkJoinPool.common.parallelism).
+    private FakebookArrayList<SiblingInfo> findPotentialSiblingsInMemory() {
+        FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
+        
+        try {
+            SiblingFinder finder = SiblingFinder.load(runner(QueryId.POTENTIAL_SIBLINGS), UsersTable, HometownCitiesTable, FriendsTable);
+            UserInfo[] users = new UserInfo[finder.size()];     // built on first use, then shared
+            for (long pair : finder.findPairs(ForkJoinPool.commonPool())) {
+                int i = (int) (pair >>> 32);
+                int j = (int) pair;
+                if (users[i] == null) {
+                    users[i] = new UserInfo(finder.userId(i), finder.firstName(i), finder.lastName(i));
+                }
+                if (users[j] == null) {
+                    users[j] = new UserInfo(finder.userId(j), finder.firstName(j), finder.lastName(j));
+                }
+                results.add(new SiblingInfo(users[i], users[j]));
+            }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            QueryFailure.report(e);
         }
         
         return results;
@@ -604,6 +1777,17 @@ public final class StudentFakebookOracle extends FakebookOracle {
     
     // Member Variables
     private Connection oracle;
+    private final FakebookOracleConfig config;
+    private final FakebookOracleState state;
+    private final boolean ownsState;                // whether close() closes <state>
+    private final StatementCache statements;
+    private final FetchSizeAdvisor fetchSizes;
+    private volatile PreparedStatement running;     // the statement cancel() interrupts
+    private volatile boolean cancelled = false;
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+    private static final int SCAN_FETCH_SIZE = 10000;
+    private static final int PAIR_BATCH_SIZE = 100;     // two bind variables per pair
+    private static final int AGE_BATCH_SIZE = 500;      // bound twice, so each batch uses 1000 bind variables
     private final String UsersTable = FakebookOracleConstants.UsersTable;
     private final String CitiesTable = FakebookOracleConstants.CitiesTable;
     private final String FriendsTable = FakebookOracleConstants.FriendsTable;
@@ -0,0 +1,35 @@
+package project2;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The TableVersions class keeps a change counter per table. Code that writes to a table (a
+    loader, an update path, or a change-notification listener such as an Oracle DCN callback
+    registered for the table) calls changed(table), and caches remember the versions of the tables
+    an answer was computed from to tell whether the answer is still current.
+
+    Table names are compared case-insensitively, the way unquoted SQL identifiers are.
+*/
+public final class TableVersions {
+    // EFFECTS: returns the current version of <table>; a table never changed is at version 0
+    public long version(String table) {
+        AtomicLong version = versions.get(key(table));
+        return version == null ? 0 : version.get();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records that <table> changed, making every answer computed from it stale
+    public void changed(String table) {
+        versions.computeIfAbsent(key(table), name -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String key(String table) {
+        return table.toUpperCase(Locale.ROOT);
+    }
+
+    // Member Variables
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+}
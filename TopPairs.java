@@ -0,0 +1,157 @@
+package project2;
+
+import java.util.Arrays;
+
+/*
+    The TopPairs class keeps the best <capacity> (score, first, second) triples offered to it,
+    where a triple is better than another if it has a higher score, or an equal score and a
+    smaller (first, second) in lexicographic order. This is exactly the
+    "order by score desc, first asc, second asc" ranking used by the pair queries.
+
+    Triples are stored in primitive arrays organized as a min-heap whose root is the worst triple
+    kept so far, so offering a candidate costs O(log capacity). The arrays start small and double
+    as triples are kept, so a huge <capacity> (a "return everything" request) costs memory only
+    for the triples actually offered; once full, offering never allocates.
+*/
+final class TopPairs {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 0
+    TopPairs(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.min(capacity, INITIAL_CAPACITY);
+        scores = new int[initial];
+        firsts = new long[initial];
+        seconds = new long[initial];
+    }
+
+    // MODIFIES: this
+    // EFFECTS: keeps the triple if it is among the best <capacity> seen so far
+    void offer(int score, long first, long second) {
+        if (finished) {
+            throw new IllegalStateException("TopPairs already finished");
+        }
+        if (size < capacity) {
+            if (size == scores.length) {
+                grow();
+            }
+            scores[size] = score;
+            firsts[size] = first;
+            seconds[size] = second;
+            siftUp(size++);
+        }
+        else if (capacity > 0 && worse(scores[0], firsts[0], seconds[0], score, first, second)) {
+            scores[0] = score;
+            firsts[0] = first;
+            seconds[0] = second;
+            siftDown(0, size);
+        }
+    }
+
+    // Whether a triple with <score> could still be kept (used to skip work for hopeless candidates)
+    boolean admits(int score) {
+        return size < capacity || (capacity > 0 && score >= scores[0]);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sorts the kept triples best-first; no more triples can be offered afterwards
+    void finish() {
+        if (finished) {
+            return;
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);                   // move the current worst to the back
+            siftDown(0, end);
+        }
+        finished = true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // REQUIRES: finish() has been called and 0 <= <i> < size()
+    int score(int i) {
+        return scores[i];
+    }
+
+    long first(int i) {
+        return firsts[i];
+    }
+
+    long second(int i) {
+        return seconds[i];
+    }
+
+    // Whether triple (s1, f1, g1) ranks below triple (s2, f2, g2)
+    private static boolean worse(int s1, long f1, long g1, int s2, long f2, long g2) {
+        if (s1 != s2) {
+            return s1 < s2;
+        }
+        if (f1 != f2) {
+            return f1 > f2;
+        }
+        return g1 > g2;
+    }
+
+    private boolean worse(int i, int j) {
+        return worse(scores[i], firsts[i], seconds[i], scores[j], firsts[j], seconds[j]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: doubles the arrays, but never beyond <capacity>
+    private void grow() {
+        int length = (int) Math.min(capacity, Math.max(1L, 2L * scores.length));
+        scores = Arrays.copyOf(scores, length);
+        firsts = Arrays.copyOf(firsts, length);
+        seconds = Arrays.copyOf(seconds, length);
+    }
+
+    private void swap(int i, int j) {
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        long first = firsts[i];
+        firsts[i] = firsts[j];
+        firsts[j] = first;
+        long second = seconds[i];
+        seconds[i] = seconds[j];
+        seconds[j] = second;
+    }
+
+    // Member Variables
+    private static final int INITIAL_CAPACITY = 64;
+    private final int capacity;
+    private int[] scores;
+    private long[] firsts;
+    private long[] seconds;
+    private int size = 0;
+    private boolean finished = false;
+}
@@ -0,0 +1,22 @@
+package project2;
+
+import java.sql.SQLException;
+
+/*
+    The UncheckedSQLException class carries an SQLException out of code that cannot throw checked
+    exceptions, such as the element supplier of a lazily fetched Stream.
+*/
+public final class UncheckedSQLException extends RuntimeException {
+    // [Constructor]
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+
+    // Member Variables
+    private static final long serialVersionUID = 1L;
+}
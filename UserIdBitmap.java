@@ -0,0 +1,160 @@
+package project2;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    The UserIdBitmap class is a compressed set of user IDs in the style of a roaring bitmap. IDs
+    are split into a high part (id >> 16), which selects a container, and a low 16-bit part,
+    which the container holds:
+
+        array container     a sorted char[] of the low parts, used while a container holds at
+                            most 4096 IDs (at most 8 KB)
+        bitmap container    1024 longs (8 KB) with one bit per low part, used beyond that
+
+    Memory therefore follows the number and density of distinct IDs, never the number of times
+    an ID is added. Bitmap containers can live outside the Java heap (direct buffers) when
+    <offHeap> is set.
+*/
+final class UserIdBitmap {
+    // [Constructor]
+    UserIdBitmap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    // EFFECTS: streams both ID columns of <friendsTable> once through <runner> into a new bitmap
+    static UserIdBitmap loadFriends(StatementRunner runner, String friendsTable, boolean offHeap) throws SQLException {
+        UserIdBitmap ids = new UserIdBitmap(offHeap);
+        try (PreparedStatement stmt = runner.connection().prepareStatement(
+                "select user1_id, user2_id from " + friendsTable,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            try (ResultSet rst = runner.execute(stmt, LOAD_FETCH_SIZE)) {
+                int rows = 0;
+                while (rst.next()) {
+                    if (++rows % LOAD_FETCH_SIZE == 0) {
+                        runner.checkCancelled();
+                    }
+                    for (int column = 1; column <= 2; column++) {
+                        long id = rst.getLong(column);
+                        if (rst.wasNull()) {
+                            ids.containsNull = true;
+                        }
+                        else {
+                            ids.add(id);
+                        }
+                    }
+                }
+                runner.fetched(rows);
+            }
+        }
+        return ids;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds <id>
+    void add(long id) {
+        int index = containerIndex.putIfAbsent(id >> 16, containers.size());
+        if (index == containers.size()) {
+            containers.add(new Container());
+        }
+        containers.get(index).add((char) id, offHeap);
+    }
+
+    // EFFECTS: returns true if <id> was added
+    boolean contains(long id) {
+        int index = containerIndex.get(id >> 16, -1);
+        return index >= 0 && containers.get(index).contains((char) id);
+    }
+
+    // Whether a NULL was seen while loading; "x NOT IN (...)" is never true when the list
+    // contains a NULL
+    boolean containsNull() {
+        return containsNull;
+    }
+
+    // The number of distinct IDs held
+    long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality;
+        }
+        return cardinality;
+    }
+
+    // The bytes held by the containers' contents, on and off the heap
+    long sizeInBytes() {
+        long bytes = 0;
+        for (Container container : containers) {
+            bytes += container.bits != null ? BITMAP_WORDS * 8L : container.array.length * 2L;
+        }
+        return bytes;
+    }
+
+    /*
+        The Container class holds the low 16 bits of the IDs sharing one high part, as a sorted
+        array while sparse and as a bitmap once dense.
+    */
+    private static final class Container {
+        // MODIFIES: this
+        // EFFECTS: adds <low>, converting to a bitmap once the array would exceed ARRAY_LIMIT
+        void add(char low, boolean offHeap) {
+            if (bits != null) {
+                int word = low >>> 6;
+                long before = bits.get(word);
+                long after = before | (1L << low);
+                if (after != before) {
+                    bits.put(word, after);
+                    cardinality++;
+                }
+                return;
+            }
+            int position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (cardinality == ARRAY_LIMIT) {
+                bits = offHeap ? ByteBuffer.allocateDirect(BITMAP_WORDS * 8).asLongBuffer() : LongBuffer.allocate(BITMAP_WORDS);
+                for (int i = 0; i < cardinality; i++) {
+                    bits.put(array[i] >>> 6, bits.get(array[i] >>> 6) | (1L << array[i]));
+                }
+                array = null;
+                bits.put(low >>> 6, bits.get(low >>> 6) | (1L << low));
+                cardinality++;
+                return;
+            }
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(array.length * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(array, position, array, position + 1, cardinality - position);
+            array[position] = low;
+            cardinality++;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits.get(low >>> 6) & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+
+        private char[] array = new char[4];
+        private LongBuffer bits;
+        private int cardinality = 0;
+    }
+
+    // Member Variables
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private final boolean offHeap;
+    private final LongIntHashMap containerIndex = new LongIntHashMap(64);
+    private final List<Container> containers = new ArrayList<Container>();
+    private boolean containsNull = false;
+}
@@ -0,0 +1,65 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import project2.FakebookOracleConfig;
+import project2.QueryCall;
+import project2.QueryFailure;
+import project2.QueryId;
+import project2.StudentFakebookOracle;
+
+/*
+    The CursorBenchmark class compares the latency and client-side allocation of every query under
+    three cursor settings, on one database loaded by FakebookDataGenerator:
+
+        scroll      scroll-insensitive cursors, as the queries were originally written
+        fixed       forward-only cursors with a fixed fetch size ("fetchSize", default 10, which is
+                    the Oracle driver's own default)
+        adaptive    forward-only cursors sized by the FetchSizeAdvisor
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.CursorBenchmark [jdbc-url [user [password]]]
+
+    Accepts the same system properties as QueryBenchmark, plus fetchSize for the "fixed" setting.
+*/
+public final class CursorBenchmark {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 3);
+        int iterations = Integer.getInteger("iterations", 10);
+        int fixedFetchSize = Integer.getInteger("fetchSize", 10);
+
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            if (!"false".equals(System.getProperty("load"))) {
+                long start = System.nanoTime();
+                EmbeddedFakebookDatabase.createSchema(connection);
+                Map<String, Long> rows = FakebookDataGenerator.fromSystemProperties().generate(connection);
+                System.out.printf("loaded %s in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+            }
+
+            FakebookOracleConfig scroll = FakebookOracleConfig.fromSystemProperties().setScrollableCursors(true);
+            FakebookOracleConfig fixed = FakebookOracleConfig.fromSystemProperties().setScrollableCursors(false);
+            FakebookOracleConfig adaptive = FakebookOracleConfig.fromSystemProperties().setScrollableCursors(false);
+            for (QueryId query : QueryId.values()) {
+                fixed.setFetchSize(query, fixedFetchSize);
+            }
+
+            System.out.println(Measurement.header());
+            for (QueryCall call : QueryBenchmark.selectedCalls()) {
+                run("scroll", scroll, connection, call, warmup, iterations);
+                run("fixed", fixed, connection, call, warmup, iterations);
+                run("adaptive", adaptive, connection, call, warmup, iterations);
+            }
+        }
+    }
+
+    // EFFECTS: measures <call> on a fresh oracle using <config>, so statement caches and fetch
+    //          size estimates are not shared between settings
+    private static void run(String setting, FakebookOracleConfig config, Connection connection, QueryCall call, int warmup, int iterations) throws Exception {
+        try (StudentFakebookOracle oracle = new StudentFakebookOracle(connection, config)) {
+            System.out.println(Measurement.run(setting + " " + call, warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(oracle))));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package project2.bench;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+import project2.FakebookOracleConstants;
+
+/*
+    The EmbeddedFakebookDatabase class opens a locally launched database (by default an
+    in-memory H2 instance in Oracle compatibility mode) and creates the Fakebook tables under the
+    names listed in FakebookOracleConstants, so that StudentFakebookOracle runs against it
+    unchanged. Table names qualified with a schema ("project2.Public_Users") get that schema
+    created first.
+
+    Only the columns read by the queries, plus a few that make rows realistically wide, are
+    created.
+
+    Oracle mode alone still sorts NULLs first in ascending order; the default database also sorts
+    them last, as Oracle does, so that queries ordering by nullable columns (findAgeInfo orders
+    by the parts of the date of birth) answer as they would on Oracle.
+*/
+public final class EmbeddedFakebookDatabase {
+    // EFFECTS: returns a connection to the default in-memory database named <name>
+    public static Connection open(String name) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:" + name + ";MODE=Oracle;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+    }
+
+    // EFFECTS: returns a connection to <url>, or to the default in-memory database if <url> is null
+    public static Connection open(String url, String user, String password) throws SQLException {
+        if (url == null) {
+            return open("fakebook");
+        }
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    // EFFECTS: returns a DataSource that opens a new connection to <url> (or to the default
+    //          in-memory database if <url> is null) on every request. It does not pool; a
+    //          benchmark that borrows one connection per query scan pays the connect time of the
+    //          embedded engine only.
+    public static DataSource dataSource(String url, String user, String password) {
+        return new DataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return open(url, user, password);
+            }
+
+            @Override
+            public Connection getConnection(String otherUser, String otherPassword) throws SQLException {
+                return open(url, otherUser, otherPassword);
+            }
+
+            @Override
+            public PrintWriter getLogWriter() {
+                return DriverManager.getLogWriter();
+            }
+
+            @Override
+            public void setLogWriter(PrintWriter out) {
+                DriverManager.setLogWriter(out);
+            }
+
+            @Override
+            public void setLoginTimeout(int seconds) {
+                DriverManager.setLoginTimeout(seconds);
+            }
+
+            @Override
+            public int getLoginTimeout() {
+                return DriverManager.getLoginTimeout();
+            }
+
+            @Override
+            public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+                throw new SQLFeatureNotSupportedException();
+            }
+
+            @Override
+            public <T> T unwrap(Class<T> iface) throws SQLException {
+                throw new SQLException("not a wrapper");
+            }
+
+            @Override
+            public boolean isWrapperFor(Class<?> iface) {
+                return false;
+            }
+        };
+    }
+
+    // MODIFIES: the database behind <connection>
+    // EFFECTS: drops (if present) and re-creates every Fakebook table, empty
+    public static void createSchema(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] table : TABLES) {
+                String name = table[0];
+                int dot = name.indexOf('.');
+                if (dot > 0) {
+                    stmt.execute("create schema if not exists " + name.substring(0, dot));
+                }
+                try {
+                    stmt.execute("drop table " + name);
+                }
+                catch (SQLException e) {
+                    // the table did not exist yet
+                }
+                stmt.execute("create table " + name + " (" + table[1] + ")");
+            }
+        }
+    }
+
+    // MODIFIES: the database behind <connection>
+    // EFFECTS: creates every index in IndexAdvisor.CANDIDATES, skipping any that already exists
+    public static void createIndexes(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (IndexAdvisor.Index index : IndexAdvisor.CANDIDATES) {
+                try {
+                    stmt.execute(index.ddl());
+                }
+                catch (SQLException e) {
+                    // the index existed already
+                }
+            }
+        }
+    }
+
+    // REQUIRES: <target> has the Fakebook tables (see createSchema)
+    // MODIFIES: the database behind <target>
+    // EFFECTS: copies from <source> into <target> the rows of the users with
+    //          <fromUserId> <= user_id <= <toUserId>, laid out as ShardedFakebookOracle expects:
+    //          their users, cities and education rows, the events they created, the albums they
+    //          own with those albums' photos and tags, every Friends row naming one of them, and
+    //          all of Cities and Programs. Returns the number of rows copied per table.
+    public static Map<String, Long> copyShard(Connection source, Connection target, long fromUserId, long toUserId) throws SQLException {
+        String range = " between " + fromUserId + " and " + toUserId;
+        String ownedAlbums = "select album_id from " + FakebookOracleConstants.AlbumsTable + " where album_owner_id" + range;
+        String ownedPhotos = "select photo_id from " + FakebookOracleConstants.PhotosTable + " where album_id in (" + ownedAlbums + ")";
+        String[][] shard = {
+            { FakebookOracleConstants.UsersTable, "user_id" + range },
+            { FakebookOracleConstants.FriendsTable, "user1_id" + range + " or user2_id" + range },
+            { FakebookOracleConstants.CitiesTable, "1 = 1" },
+            { FakebookOracleConstants.CurrentCitiesTable, "user_id" + range },
+            { FakebookOracleConstants.HometownCitiesTable, "user_id" + range },
+            { FakebookOracleConstants.ProgramsTable, "1 = 1" },
+            { FakebookOracleConstants.EducationTable, "user_id" + range },
+            { FakebookOracleConstants.EventsTable, "event_creator_id" + range },
+            { FakebookOracleConstants.AlbumsTable, "album_owner_id" + range },
+            { FakebookOracleConstants.PhotosTable, "album_id in (" + ownedAlbums + ")" },
+            { FakebookOracleConstants.TagsTable, "tag_photo_id in (" + ownedPhotos + ")" },
+        };
+
+        Map<String, Long> copied = new LinkedHashMap<String, Long>();
+        boolean autoCommit = target.getAutoCommit();
+        target.setAutoCommit(false);
+        try (Statement select = source.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            select.setFetchSize(COPY_BATCH_SIZE);
+            for (String[] table : shard) {
+                long rows = 0;
+                try (ResultSet rst = select.executeQuery("select * from " + table[0] + " where " + table[1])) {
+                    int columns = rst.getMetaData().getColumnCount();
+                    StringBuilder insert = new StringBuilder("insert into " + table[0] + " values (?");
+                    for (int i = 1; i < columns; i++) {
+                        insert.append(", ?");
+                    }
+                    try (PreparedStatement stmt = target.prepareStatement(insert.append(")").toString())) {
+                        while (rst.next()) {
+                            for (int i = 1; i <= columns; i++) {
+                                stmt.setObject(i, rst.getObject(i));
+                            }
+                            stmt.addBatch();
+                            if (++rows % COPY_BATCH_SIZE == 0) {
+                                stmt.executeBatch();
+                            }
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                copied.put(table[0], rows);
+            }
+            target.commit();
+        }
+        catch (SQLException e) {
+            target.rollback();
+            throw e;
+        }
+        finally {
+            target.setAutoCommit(autoCommit);
+        }
+        return copied;
+    }
+
+    // Member Variables
+    private static final int COPY_BATCH_SIZE = 10000;
+    private static final String[][] TABLES = {
+        { FakebookOracleConstants.UsersTable,
+          "user_id number primary key, first_name varchar2(100), last_name varchar2(100), " +
+          "year_of_birth integer, month_of_birth integer, day_of_birth integer, gender varchar2(100)" },
+        { FakebookOracleConstants.FriendsTable,
+          "user1_id number not null, user2_id number not null" },
+        { FakebookOracleConstants.CitiesTable,
+          "city_id integer primary key, city_name varchar2(100), state_name varchar2(100), country_name varchar2(100)" },
+        { FakebookOracleConstants.CurrentCitiesTable,
+          "user_id number primary key, current_city_id integer not null" },
+        { FakebookOracleConstants.HometownCitiesTable,
+          "user_id number primary key, hometown_city_id integer not null" },
+        { FakebookOracleConstants.ProgramsTable,
+          "program_id integer primary key, institution varchar2(100), concentration varchar2(100), degree varchar2(100)" },
+        { FakebookOracleConstants.EducationTable,
+          "user_id number not null, program_id integer not null, program_year integer" },
+        { FakebookOracleConstants.EventsTable,
+          "event_id number primary key, event_creator_id number, event_name varchar2(100), event_city_id integer" },
+        { FakebookOracleConstants.AlbumsTable,
+          "album_id number primary key, album_owner_id number, album_name varchar2(100), album_link varchar2(2000), cover_photo_id number" },
+        { FakebookOracleConstants.PhotosTable,
+          "photo_id number primary key, album_id number not null, photo_caption varchar2(2000), photo_link varchar2(2000)" },
+        { FakebookOracleConstants.TagsTable,
+          "tag_photo_id number not null, tag_subject_id number not null, tag_x number, tag_y number" },
+    };
+}
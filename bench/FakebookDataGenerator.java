@@ -0,0 +1,429 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import project2.FakebookOracleConstants;
+
+/*
+    The FakebookDataGenerator class streams a synthetic Fakebook dataset into the tables named in
+    FakebookOracleConstants using JDBC batch inserts. The dataset has the shapes that stress the
+    queries:
+
+        Friends     power-law degrees (a few users with enormous friend lists), generated as
+                    (user1_id, user2_id) pairs with user1_id < user2_id and no duplicates
+        Tags        power-law tags per photo (a few "celebrity" photos tagged hundreds of times),
+                    with popular users tagged more often
+        Users       Zipf-distributed first and last names, so names and (last name, hometown)
+                    groups repeat heavily, and optionally dates of birth with unknown (NULL)
+                    year, month or day
+        Cities      power-law city popularity for hometowns, current cities and events
+
+    Popularity follows rank: user 1, photo 1 and city 1 are the most popular. Edge counts are
+    drawn per user from a Chung-Lu style model, where the expected number of friendships
+    between users u and v is proportional to weight(u) * weight(v), and
+    weight(r) = r^(-1 / (exponent - 1)) gives a degree distribution with the configured
+    power-law exponent.
+
+    Generation is deterministic: every user, photo, album and event draws from its own
+    SplittableRandom derived from the seed and its ID, so the same settings always give the same
+    rows. Nothing is kept across entities. Duplicate friendships of a user, or duplicate subjects
+    of a photo, are removed by sorting that one entity's sample, so heap use is bounded by the
+    largest single friend list, not by the edge count. Billions of edges can be streamed. Because
+    duplicates are dropped rather than redrawn, the generated counts approximate the configured
+    targets.
+*/
+public final class FakebookDataGenerator {
+    public FakebookDataGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public FakebookDataGenerator setUsers(long users) {
+        this.users = users;
+        return this;
+    }
+
+    // The target number of rows in the Friends table
+    public FakebookDataGenerator setFriendships(long friendships) {
+        this.friendships = friendships;
+        return this;
+    }
+
+    // The power-law exponent of the friend degree distribution (typically between 2 and 3)
+    public FakebookDataGenerator setFriendExponent(double friendExponent) {
+        this.friendExponent = friendExponent;
+        return this;
+    }
+
+    public FakebookDataGenerator setPhotos(long photos) {
+        this.photos = photos;
+        return this;
+    }
+
+    // The target number of rows in the Tags table
+    public FakebookDataGenerator setTags(long tags) {
+        this.tags = tags;
+        return this;
+    }
+
+    // The power-law exponent of the tags-per-photo distribution
+    public FakebookDataGenerator setTagExponent(double tagExponent) {
+        this.tagExponent = tagExponent;
+        return this;
+    }
+
+    // The fraction of users with one unknown (NULL) part of their date of birth: the year, the
+    // month or the day, chosen uniformly
+    public FakebookDataGenerator setUnknownBirthParts(double unknownBirthParts) {
+        this.unknownBirthParts = unknownBirthParts;
+        return this;
+    }
+
+    public FakebookDataGenerator setCities(int cities) {
+        this.cities = cities;
+        return this;
+    }
+
+    public FakebookDataGenerator setEvents(long events) {
+        this.events = events;
+        return this;
+    }
+
+    // The number of rows per JDBC batch; each batch is committed separately
+    public FakebookDataGenerator setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    // EFFECTS: creates a generator configured from the system properties users, friendships,
+    //          friendExponent, photos, tags, tagExponent, unknownBirthParts, cities, events,
+    //          batchSize and seed, with defaults for a laptop-sized dataset
+    public static FakebookDataGenerator fromSystemProperties() {
+        long users = Long.getLong("users", 20000L);
+        return new FakebookDataGenerator()
+            .setUsers(users)
+            .setFriendships(Long.getLong("friendships", users * 10))
+            .setFriendExponent(Double.parseDouble(System.getProperty("friendExponent", "2.3")))
+            .setPhotos(Long.getLong("photos", users))
+            .setTags(Long.getLong("tags", users * 3))
+            .setTagExponent(Double.parseDouble(System.getProperty("tagExponent", "2.5")))
+            .setUnknownBirthParts(Double.parseDouble(System.getProperty("unknownBirthParts", "0")))
+            .setCities(Integer.getInteger("cities", 500))
+            .setEvents(Long.getLong("events", users / 10))
+            .setBatchSize(Integer.getInteger("batchSize", 5000))
+            .setSeed(Long.getLong("seed", 484L));
+    }
+
+    // MODIFIES: the database behind <connection>
+    // EFFECTS: inserts the configured dataset into the (empty) Fakebook tables and returns the
+    //          number of rows written per table
+    public Map<String, Long> generate(Connection connection) throws SQLException {
+        Map<String, Long> rows = new LinkedHashMap<String, Long>();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            rows.put(FakebookOracleConstants.CitiesTable, generateCities(connection));
+            rows.put(FakebookOracleConstants.ProgramsTable, generatePrograms(connection));
+            generateUsers(connection, rows);
+            rows.put(FakebookOracleConstants.FriendsTable, generateFriends(connection));
+            generateAlbumsAndPhotos(connection, rows);
+            rows.put(FakebookOracleConstants.TagsTable, generateTags(connection));
+            rows.put(FakebookOracleConstants.EventsTable, generateEvents(connection));
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return rows;
+    }
+
+    private long generateCities(Connection connection) throws SQLException {
+        try (BatchWriter cityRows = new BatchWriter(connection, FakebookOracleConstants.CitiesTable, 4)) {
+            for (int city = 1; city <= cities; city++) {
+                SplittableRandom random = random(CITY_STREAM, city);
+                cityRows.row(city, "City " + city, STATES[random.nextInt(STATES.length)], "United States");
+            }
+            return cityRows.written();
+        }
+    }
+
+    private long generatePrograms(Connection connection) throws SQLException {
+        try (BatchWriter programRows = new BatchWriter(connection, FakebookOracleConstants.ProgramsTable, 4)) {
+            for (int program = 1; program <= PROGRAMS; program++) {
+                programRows.row(program, "University " + (1 + program % 20), "Concentration " + program, program % 3 == 0 ? "PhD" : "BS");
+            }
+            return programRows.written();
+        }
+    }
+
+    // Users, their hometown and current cities, and their education are written together
+    private void generateUsers(Connection connection, Map<String, Long> rows) throws SQLException {
+        try (BatchWriter userRows = new BatchWriter(connection, FakebookOracleConstants.UsersTable, 7);
+             BatchWriter hometownRows = new BatchWriter(connection, FakebookOracleConstants.HometownCitiesTable, 2);
+             BatchWriter currentRows = new BatchWriter(connection, FakebookOracleConstants.CurrentCitiesTable, 2);
+             BatchWriter educationRows = new BatchWriter(connection, FakebookOracleConstants.EducationTable, 3)) {
+            for (long id = 1; id <= users; id++) {
+                SplittableRandom random = random(USER_STREAM, id);
+                int year = 1950 + random.nextInt(56);
+                String firstName = FIRST_NAMES[(int) powerLaw(random, 1.0, 0, FIRST_NAMES.length - 1)];
+                String lastName = LAST_NAMES[(int) powerLaw(random, 1.0, 0, LAST_NAMES.length - 1)];
+                Integer[] birth = { year, 1 + random.nextInt(12), 1 + random.nextInt(28) };
+                if (unknownBirthParts > 0) {
+                    // a stream of its own, so the rest of the dataset does not change with it
+                    SplittableRandom unknown = random(BIRTH_STREAM, id);
+                    if (unknown.nextDouble() < unknownBirthParts) {
+                        birth[unknown.nextInt(birth.length)] = null;
+                    }
+                }
+                userRows.row(id, firstName, lastName, birth[0], birth[1], birth[2], random.nextBoolean() ? "male" : "female");
+                
+                long hometown = powerLaw(random, CITY_WEIGHT_EXPONENT, 1, cities);
+                hometownRows.row(id, hometown);
+                currentRows.row(id, random.nextInt(10) < 6 ? hometown : powerLaw(random, CITY_WEIGHT_EXPONENT, 1, cities));
+                if (random.nextInt(4) != 0) {
+                    educationRows.row(id, 1 + random.nextInt(PROGRAMS), year + 22);
+                }
+            }
+            rows.put(FakebookOracleConstants.UsersTable, userRows.written());
+            rows.put(FakebookOracleConstants.HometownCitiesTable, hometownRows.written());
+            rows.put(FakebookOracleConstants.CurrentCitiesTable, currentRows.written());
+            rows.put(FakebookOracleConstants.EducationTable, educationRows.written());
+        }
+    }
+
+    // Each user u draws its friends v > u: the number of them follows Poisson(C * w(u) * W(u)),
+    // where W(u) is the total weight of the users above u, and the friends themselves follow the
+    // power law truncated to (u, users]
+    private long generateFriends(Connection connection) throws SQLException {
+        double beta = 1.0 / (friendExponent - 1.0);
+        double totalWeight = weightSum(beta, 1, users);
+        double scale = totalWeight == 0 ? 0 : 2.0 * friendships / (totalWeight * totalWeight);
+        try (BatchWriter friendRows = new BatchWriter(connection, FakebookOracleConstants.FriendsTable, 2)) {
+            for (long u = 1; u < users; u++) {
+                SplittableRandom random = random(FRIEND_STREAM, u);
+                double mean = scale * Math.pow(u, -beta) * weightSum(beta, u + 1, users);
+                long count = Math.min(poisson(random, mean), users - u);
+                long[] friends = new long[(int) Math.min(count, Integer.MAX_VALUE - 8)];
+                for (int i = 0; i < friends.length; i++) {
+                    friends[i] = powerLaw(random, beta, u + 1, users);
+                }
+                Arrays.sort(friends);
+                for (int i = 0; i < friends.length; i++) {
+                    if (i == 0 || friends[i] != friends[i - 1]) {
+                        friendRows.row(u, friends[i]);
+                    }
+                }
+            }
+            return friendRows.written();
+        }
+    }
+
+    private void generateAlbumsAndPhotos(Connection connection, Map<String, Long> rows) throws SQLException {
+        long albums = Math.max(1, (photos + PHOTOS_PER_ALBUM - 1) / PHOTOS_PER_ALBUM);
+        try (BatchWriter albumRows = new BatchWriter(connection, FakebookOracleConstants.AlbumsTable, 5);
+             BatchWriter photoRows = new BatchWriter(connection, FakebookOracleConstants.PhotosTable, 4)) {
+            for (long album = 1; album <= albums; album++) {
+                SplittableRandom random = random(ALBUM_STREAM, album);
+                albumRows.row(album, powerLaw(random, 1.0, 1, Math.max(users, 1)), "Album " + album,
+                    "http://www.fakebook.com/album/" + album, (album - 1) * PHOTOS_PER_ALBUM + 1);
+            }
+            for (long photo = 1; photo <= photos; photo++) {
+                photoRows.row(photo, 1 + (photo - 1) / PHOTOS_PER_ALBUM, "Caption " + photo, "http://www.fakebook.com/photo/" + photo);
+            }
+            rows.put(FakebookOracleConstants.AlbumsTable, albumRows.written());
+            rows.put(FakebookOracleConstants.PhotosTable, photoRows.written());
+        }
+    }
+
+    // Photo p is tagged Poisson(C * w(p)) times; subjects are drawn by user popularity
+    private long generateTags(Connection connection) throws SQLException {
+        double beta = 1.0 / (tagExponent - 1.0);
+        double scale = tags / Math.max(weightSum(beta, 1, photos), 1e-9);
+        double subjectBeta = 1.0 / (friendExponent - 1.0);
+        try (BatchWriter tagRows = new BatchWriter(connection, FakebookOracleConstants.TagsTable, 4)) {
+            for (long photo = 1; photo <= photos && users > 0; photo++) {
+                SplittableRandom random = random(TAG_STREAM, photo);
+                long count = Math.min(poisson(random, scale * Math.pow(photo, -beta)), users);
+                long[] subjects = new long[(int) Math.min(count, Integer.MAX_VALUE - 8)];
+                for (int i = 0; i < subjects.length; i++) {
+                    subjects[i] = powerLaw(random, subjectBeta, 1, users);
+                }
+                Arrays.sort(subjects);
+                for (int i = 0; i < subjects.length; i++) {
+                    if (i == 0 || subjects[i] != subjects[i - 1]) {
+                        tagRows.row(photo, subjects[i], random.nextDouble() * 100, random.nextDouble() * 100);
+                    }
+                }
+            }
+            return tagRows.written();
+        }
+    }
+
+    private long generateEvents(Connection connection) throws SQLException {
+        try (BatchWriter eventRows = new BatchWriter(connection, FakebookOracleConstants.EventsTable, 4)) {
+            for (long event = 1; event <= events && users > 0; event++) {
+                SplittableRandom random = random(EVENT_STREAM, event);
+                eventRows.row(event, 1 + random.nextLong(users), "Event " + event, powerLaw(random, CITY_WEIGHT_EXPONENT, 1, cities));
+            }
+            return eventRows.written();
+        }
+    }
+
+    // EFFECTS: returns the random stream of entity <id> in table stream <stream>
+    private SplittableRandom random(long stream, long id) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + stream * 0xBF58476D1CE4E5B9L + id);
+    }
+
+    // EFFECTS: draws an integer in [lo, hi] with probability roughly proportional to x^(-beta),
+    //          by inverting the CDF of the continuous power law on [lo, hi + 1)
+    static long powerLaw(SplittableRandom random, double beta, long lo, long hi) {
+        if (hi <= lo) {
+            return lo;
+        }
+        double u = random.nextDouble();
+        double a = lo == 0 ? 1 : lo;
+        double b = hi + (lo == 0 ? 2 : 1);
+        double x;
+        if (Math.abs(beta - 1.0) < 1e-9) {
+            x = a * Math.pow(b / a, u);
+        }
+        else {
+            double p = 1.0 - beta;
+            x = Math.pow(Math.pow(a, p) + u * (Math.pow(b, p) - Math.pow(a, p)), 1.0 / p);
+        }
+        long value = (long) Math.floor(x) - (lo == 0 ? 1 : 0);
+        return Math.max(lo, Math.min(hi, value));
+    }
+
+    // EFFECTS: approximates the sum of x^(-beta) for x in [lo, hi] by the matching integral
+    static double weightSum(double beta, long lo, long hi) {
+        if (hi < lo) {
+            return 0.0;
+        }
+        if (Math.abs(beta - 1.0) < 1e-9) {
+            return Math.log((hi + 1.0) / lo);
+        }
+        double p = 1.0 - beta;
+        return (Math.pow(hi + 1.0, p) - Math.pow(lo, p)) / p;
+    }
+
+    // EFFECTS: draws from a Poisson distribution with the given mean (normal approximation for
+    //          large means)
+    static long poisson(SplittableRandom random, double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        if (mean > 30) {
+            double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+            return Math.max(0, Math.round(mean + Math.sqrt(mean) * gaussian));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        long count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    /*
+        The BatchWriter class inserts rows into one table through a single PreparedStatement,
+        executing and committing the batch every <batchSize> rows.
+    */
+    private final class BatchWriter implements AutoCloseable {
+        // [Constructor]
+        // REQUIRES: <table> has exactly <columns> columns
+        BatchWriter(Connection connection, String table, int columns) throws SQLException {
+            this.connection = connection;
+            StringBuilder sql = new StringBuilder("insert into " + table + " values (?");
+            for (int i = 1; i < columns; i++) {
+                sql.append(", ?");
+            }
+            insert = connection.prepareStatement(sql.append(")").toString());
+        }
+
+        // MODIFIES: this, the database
+        // EFFECTS: adds one row with the given column values to the batch; a null value is
+        //          written as NULL
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    insert.setNull(i + 1, Types.NULL);
+                }
+                else {
+                    insert.setObject(i + 1, values[i]);
+                }
+            }
+            insert.addBatch();
+            if (++pending == batchSize) {
+                flush();
+            }
+            written++;
+        }
+
+        long written() {
+            return written;
+        }
+
+        private void flush() throws SQLException {
+            if (pending > 0) {
+                insert.executeBatch();
+                connection.commit();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            }
+            finally {
+                insert.close();
+            }
+        }
+
+        // Member Variables
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private int pending = 0;
+        private long written = 0;
+    }
+
+    // Member Variables
+    private static final long CITY_STREAM = 1;
+    private static final long USER_STREAM = 2;
+    private static final long FRIEND_STREAM = 3;
+    private static final long ALBUM_STREAM = 4;
+    private static final long TAG_STREAM = 5;
+    private static final long EVENT_STREAM = 6;
+    private static final long BIRTH_STREAM = 7;
+    private static final double CITY_WEIGHT_EXPONENT = 0.8;
+    private static final int PROGRAMS = 50;
+    private static final long PHOTOS_PER_ALBUM = 20;
+    private static final String[] STATES = { "Michigan", "Ohio", "California", "New York", "Texas", "Florida", "Illinois", "Washington" };
+    private static final String[] FIRST_NAMES = { "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda",
+        "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Christopher",
+        "Karen", "Bo", "Al", "Maximiliano", "Anastasia" };
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+        "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+        "Jackson", "Martin", "Lee", "Perez", "Thompson", "White" };
+    private long seed = 484L;
+    private long users = 20000L;
+    private long friendships = 200000L;
+    private double friendExponent = 2.3;
+    private long photos = 20000L;
+    private long tags = 60000L;
+    private double tagExponent = 2.5;
+    private double unknownBirthParts = 0.0;
+    private int cities = 500;
+    private long events = 2000L;
+    private int batchSize = 5000;
+}
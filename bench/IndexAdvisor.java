@@ -0,0 +1,319 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import project2.FakebookOracleConfig;
+import project2.FakebookOracleConstants;
+import project2.QueryCall;
+import project2.QueryFailure;
+import project2.QueryId;
+import project2.StudentFakebookOracle;
+
+/*
+    The IndexAdvisor class inspects the execution plan of every statement StudentFakebookOracle
+    runs, reports the tables each one reads with a full scan, and recommends the indexes from
+    CANDIDATES that would give those statements an indexed access path. With create=true it
+    creates the recommended indexes one at a time and re-measures the queries that scanned the
+    indexed table after each, so the latency gain of every index is shown separately.
+
+    Plans come from EXPLAIN PLAN (read back from PLAN_TABLE) on Oracle, and from EXPLAIN on
+    H2. Bind variables are left unbound, so the plans are the generic ones Oracle would pick
+    before bind peeking.
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.IndexAdvisor [jdbc-url [user [password]]]
+
+    System properties:
+        create=false                        create the recommended indexes and re-measure
+        warmup=3, iterations=10             iterations per query and measurement
+        num, yearDiff, userID, load,        as for QueryBenchmark
+        dataset shape properties
+*/
+public final class IndexAdvisor {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 3);
+        int iterations = Integer.getInteger("iterations", 10);
+
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            if (!"false".equals(System.getProperty("load"))) {
+                EmbeddedFakebookDatabase.createSchema(connection);
+                System.out.println("loaded " + FakebookDataGenerator.fromSystemProperties().generate(connection));
+            }
+
+            IndexAdvisor advisor = new IndexAdvisor(connection);
+            Map<String, Set<String>> scans = advisor.fullScans();
+            System.out.println("full table scans per statement:");
+            for (Map.Entry<String, Set<String>> entry : scans.entrySet()) {
+                System.out.printf("  %-36s %s%n", entry.getKey(), entry.getValue().isEmpty() ? "-" : String.join(", ", entry.getValue()));
+            }
+
+            List<Index> recommended = advisor.recommend(scans);
+            System.out.println("recommended indexes:");
+            for (Index index : recommended) {
+                System.out.println("  " + index.ddl());
+            }
+
+            if (Boolean.getBoolean("create") && !recommended.isEmpty()) {
+                advisor.createAndMeasure(recommended, scans, warmup, iterations);
+            }
+        }
+    }
+
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection to a database holding the Fakebook tables
+    IndexAdvisor(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.oracleDialect = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("oracle");
+    }
+
+    // EFFECTS: runs every query once through SQL to learn its statements, and returns, per
+    //          statement ("<query method>#<step>"), the tables its plan reads with a full scan
+    Map<String, Set<String>> fullScans() throws Exception {
+        Map<String, String> statements;
+        try (StudentFakebookOracle oracle = new StudentFakebookOracle(connection, new FakebookOracleConfig())) {
+            for (QueryCall call : QueryBenchmark.selectedCalls()) {
+                call.invoke(oracle);
+            }
+            statements = oracle.statementCache().preparedSql();
+        }
+
+        Map<String, Set<String>> scans = new LinkedHashMap<String, Set<String>>();
+        for (Map.Entry<String, String> statement : statements.entrySet()) {
+            try {
+                scans.put(statement.getKey(), oracleDialect ? oracleFullScans(statement.getValue()) : h2FullScans(statement.getValue()));
+            }
+            catch (SQLException e) {
+                System.err.println(statement.getKey() + ": " + e.getMessage());
+            }
+        }
+        return scans;
+    }
+
+    // EFFECTS: returns the CANDIDATES on a table some statement scans fully that no existing
+    //          index already covers
+    List<Index> recommend(Map<String, Set<String>> scans) throws SQLException {
+        Set<String> scanned = new TreeSet<String>();
+        for (Set<String> tables : scans.values()) {
+            scanned.addAll(tables);
+        }
+        List<Index> recommended = new ArrayList<Index>();
+        for (Index index : CANDIDATES) {
+            if (scanned.contains(simpleName(index.table)) && !covered(index)) {
+                recommended.add(index);
+            }
+        }
+        return recommended;
+    }
+
+    // MODIFIES: the database behind the connection
+    // EFFECTS: measures the queries that scan a table, then creates each index in <indexes> in
+    //          turn and re-measures the queries that scanned its table
+    void createAndMeasure(List<Index> indexes, Map<String, Set<String>> scans, int warmup, int iterations) throws Exception {
+        try (StudentFakebookOracle oracle = new StudentFakebookOracle(connection, new FakebookOracleConfig())) {
+            Map<QueryId, Measurement> latest = new LinkedHashMap<QueryId, Measurement>();
+            for (QueryCall call : QueryBenchmark.selectedCalls()) {
+                if (!scanningQueries(scans, null).contains(call.query())) {
+                    continue;
+                }
+                latest.put(call.query(), Measurement.run(call.toString(), warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(oracle))));
+            }
+
+            System.out.printf("%-44s %-32s %12s %12s %8s%n", "index", "query", "p50 before", "p50 after", "speedup");
+            for (Index index : indexes) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(index.ddl());
+                }
+                Set<QueryId> affected = scanningQueries(scans, simpleName(index.table));
+                for (QueryCall call : QueryBenchmark.selectedCalls()) {
+                    if (!affected.contains(call.query())) {
+                        continue;
+                    }
+                    Measurement before = latest.get(call.query());
+                    Measurement after = Measurement.run(call.toString(), warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(oracle)));
+                    latest.put(call.query(), after);
+                    if (before.failed() || after.failed()) {
+                        System.out.printf("%-44s %-32s %12s%n", index.name(), call, "FAILED");
+                        continue;
+                    }
+                    System.out.printf("%-44s %-32s %12.2f %12.2f %7.1fx%n", index.name(), call,
+                        before.percentileMillis(50), after.percentileMillis(50), before.percentileMillis(50) / Math.max(after.percentileMillis(50), 1e-3));
+                }
+            }
+        }
+    }
+
+    // EFFECTS: returns the queries with a statement that scans <table> fully, or that scans any
+    //          table if <table> is null
+    private static Set<QueryId> scanningQueries(Map<String, Set<String>> scans, String table) {
+        Set<QueryId> queries = EnumSet.noneOf(QueryId.class);
+        for (Map.Entry<String, Set<String>> entry : scans.entrySet()) {
+            if (table == null ? !entry.getValue().isEmpty() : entry.getValue().contains(table)) {
+                String method = entry.getKey().substring(0, entry.getKey().indexOf('#'));
+                for (QueryId query : QueryId.values()) {
+                    if (query.methodName().equals(method)) {
+                        queries.add(query);
+                    }
+                }
+            }
+        }
+        return queries;
+    }
+
+    // EFFECTS: explains <sql> into PLAN_TABLE and returns the tables read with TABLE ACCESS FULL
+    private Set<String> oracleFullScans(String sql) throws SQLException {
+        String id = "fakebook_" + (++explained);
+        Set<String> tables = new TreeSet<String>();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("explain plan set statement_id = '" + id + "' for " + namedBinds(sql));
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("select object_name from plan_table where statement_id = ? and operation = 'TABLE ACCESS' and options = 'FULL'")) {
+            stmt.setString(1, id);
+            try (ResultSet rst = stmt.executeQuery()) {
+                while (rst.next()) {
+                    tables.add(rst.getString(1).toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("delete from plan_table where statement_id = ?")) {
+            stmt.setString(1, id);
+            stmt.executeUpdate();
+        }
+        return tables;
+    }
+
+    // EFFECTS: explains <sql> with H2's EXPLAIN and returns the tables read with a table scan
+    private Set<String> h2FullScans(String sql) throws SQLException {
+        Set<String> tables = new TreeSet<String>();
+        try (PreparedStatement stmt = connection.prepareStatement("explain " + sql);
+             ResultSet rst = stmt.executeQuery()) {
+            while (rst.next()) {
+                Matcher scan = H2_TABLE_SCAN.matcher(rst.getString(1));
+                while (scan.find()) {
+                    tables.add(scan.group(1).toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return tables;
+    }
+
+    // EFFECTS: returns <sql> with its JDBC placeholders turned into the named binds EXPLAIN PLAN
+    //          accepts unbound; the statements contain no '?' inside string literals
+    private static String namedBinds(String sql) {
+        StringBuilder out = new StringBuilder();
+        int bind = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                out.append(":b").append(++bind);
+            }
+            else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // EFFECTS: returns whether an existing index on the table of <index> starts with all of its
+    //          columns, in order
+    private boolean covered(Index index) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        int dot = index.table.indexOf('.');
+        String schema = dot > 0 ? index.table.substring(0, dot).toUpperCase(Locale.ROOT) : null;
+        Map<String, List<String>> existing = new LinkedHashMap<String, List<String>>();
+        try (ResultSet rst = meta.getIndexInfo(null, schema, simpleName(index.table), false, true)) {
+            while (rst.next()) {
+                String column = rst.getString("COLUMN_NAME");
+                if (column != null) {
+                    List<String> columns = existing.computeIfAbsent(rst.getString("INDEX_NAME"), name -> new ArrayList<String>());
+                    int position = rst.getShort("ORDINAL_POSITION");
+                    while (columns.size() < position) {
+                        columns.add(null);
+                    }
+                    columns.set(position - 1, column.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        for (List<String> columns : existing.values()) {
+            if (columns.size() >= index.columns.length) {
+                boolean prefix = true;
+                for (int i = 0; i < index.columns.length; i++) {
+                    prefix &= index.columns[i].equalsIgnoreCase(columns.get(i));
+                }
+                if (prefix) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // EFFECTS: returns <table> without its schema, upper-cased the way unquoted names are stored
+    private static String simpleName(String table) {
+        return table.substring(table.indexOf('.') + 1).toUpperCase(Locale.ROOT);
+    }
+
+    /*
+        The Index class describes one candidate index: a table and its key columns, the leading
+        columns being the ones the queries look rows up by and the rest making the index cover
+        the columns read alongside them.
+    */
+    static final class Index {
+        // [Constructor]
+        Index(String table, String... columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+
+        // EFFECTS: returns the index name, at most 30 characters long as older Oracle releases
+        //          require
+        String name() {
+            String name = "fb_" + simpleName(table).toLowerCase(Locale.ROOT) + "_" + String.join("_", columns);
+            return name.length() <= 30 ? name : name.substring(0, 30);
+        }
+
+        String ddl() {
+            return "create index " + name() + " on " + table + " (" + String.join(", ", columns) + ")";
+        }
+
+        // Member Variables
+        final String table;
+        final String[] columns;
+    }
+
+    // The indexes that serve the access paths of the ten queries
+    static final Index[] CANDIDATES = {
+        new Index(FakebookOracleConstants.UsersTable, "month_of_birth", "user_id"),                   // Query 0
+        new Index(FakebookOracleConstants.UsersTable, "last_name", "user_id"),                        // Query 9
+        new Index(FakebookOracleConstants.UsersTable, "gender", "year_of_birth", "user_id"),          // Query 5
+        new Index(FakebookOracleConstants.FriendsTable, "user1_id", "user2_id"),                      // Queries 2, 5, 6, 8, 9
+        new Index(FakebookOracleConstants.FriendsTable, "user2_id", "user1_id"),                      // reverse lookups of Queries 2, 6, 8
+        new Index(FakebookOracleConstants.TagsTable, "tag_photo_id", "tag_subject_id"),               // Queries 4, 5
+        new Index(FakebookOracleConstants.TagsTable, "tag_subject_id", "tag_photo_id"),               // Query 5
+        new Index(FakebookOracleConstants.CurrentCitiesTable, "user_id", "current_city_id"),          // Query 3
+        new Index(FakebookOracleConstants.HometownCitiesTable, "user_id", "hometown_city_id"),        // Queries 3, 9
+        new Index(FakebookOracleConstants.EventsTable, "event_city_id"),                              // Query 7
+        new Index(FakebookOracleConstants.PhotosTable, "album_id", "photo_id"),                       // Queries 4, 5
+    };
+
+    // Member Variables
+    private static final Pattern H2_TABLE_SCAN = Pattern.compile("/\\* (?:\\w+\\.)?(\\w+)\\.tableScan");
+    private final Connection connection;
+    private final boolean oracleDialect;
+    private int explained = 0;
+}
@@ -0,0 +1,114 @@
+package project2.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/*
+    The Measurement class times repeated executions of one operation on the calling thread and
+    summarizes them: throughput, latency percentiles, and allocation per operation and per
+    second (from the per-thread allocation counter of HotSpot's ThreadMXBean).
+
+    An operation that throws, for example because the query it runs failed (see
+    project2.QueryFailure), ends the measurement: the result is FAILED with the exception's
+    message, and no figures are reported for it.
+*/
+public final class Measurement {
+    // An operation to measure
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    // [Constructor]
+    private Measurement(String label, long[] nanos, long allocatedBytes, String failure) {
+        this.label = label;
+        this.nanos = nanos;
+        this.allocatedBytes = allocatedBytes;
+        this.failure = failure;
+        Arrays.sort(this.nanos);
+    }
+
+    // EFFECTS: runs <operation> <warmup> times unmeasured, then <iterations> times measured;
+    //          stops at the first run that throws and returns a FAILED measurement
+    public static Measurement run(String label, int warmup, int iterations, Operation operation) {
+        try {
+            for (int i = 0; i < warmup; i++) {
+                operation.run();
+            }
+            long[] nanos = new long[iterations];
+            long allocated = 0;
+            for (int i = 0; i < iterations; i++) {
+                long bytesBefore = allocatedBytes();
+                long start = System.nanoTime();
+                operation.run();
+                nanos[i] = System.nanoTime() - start;
+                allocated += allocatedBytes() - bytesBefore;
+            }
+            return new Measurement(label, nanos, allocated, null);
+        }
+        catch (Exception e) {
+            return new Measurement(label, new long[0], 0, String.valueOf(e.getMessage()));
+        }
+    }
+
+    public String label() {
+        return label;
+    }
+
+    // Whether a run of the operation failed, in which case there are no figures
+    public boolean failed() {
+        return failure != null;
+    }
+
+    // Operations per second over the measured iterations
+    public double throughput() {
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        return total == 0 ? 0.0 : nanos.length / (total / 1e9);
+    }
+
+    // The latency in milliseconds below which <percentile> percent of the iterations finished
+    public double percentileMillis(double percentile) {
+        if (nanos.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * nanos.length) - 1;
+        return nanos[Math.max(0, Math.min(index, nanos.length - 1))] / 1e6;
+    }
+
+    public double bytesPerOperation() {
+        return nanos.length == 0 ? 0.0 : (double) allocatedBytes / nanos.length;
+    }
+
+    // Allocation rate in MB per second of measured time
+    public double allocationRate() {
+        return bytesPerOperation() * throughput() / (1024.0 * 1024.0);
+    }
+
+    public static String header() {
+        return String.format("%-36s %10s %10s %10s %10s %10s %14s %10s",
+            "benchmark", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "alloc B/op", "MB/s");
+    }
+
+    @Override
+    public String toString() {
+        if (failed()) {
+            return String.format("%-36s %10s  %s", label, "FAILED", failure);
+        }
+        return String.format("%-36s %10.2f %10.2f %10.2f %10.2f %10.2f %,14.0f %10.1f",
+            label, throughput(), percentileMillis(50), percentileMillis(90), percentileMillis(99),
+            percentileMillis(100), bytesPerOperation(), allocationRate());
+    }
+
+    // The number of bytes allocated so far by the current thread
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // Member Variables
+    private final String label;
+    private final long[] nanos;
+    private final long allocatedBytes;
+    private final String failure;   // the message of the failed run, or null
+}
@@ -0,0 +1,86 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+
+import project2.FakebookOracleConfig;
+import project2.FakebookOracleConstants;
+import project2.QueryEngine;
+import project2.QueryFailure;
+import project2.StudentFakebookOracle;
+
+/*
+    The NameInfoBenchmark class compares the two findNameInfo engines: the three-scan SQL path
+    and the single-pass IN_MEMORY path. For each requested table size it (re)loads a Users table
+    with synthetic first names, runs each engine for a number of warm-up and measured
+    iterations, and prints the figures collected by Measurement.
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.NameInfoBenchmark
+                 [jdbc-url [user [password]]] [-Dsizes=1000000,10000000,50000000]
+                 [-Dwarmup=2] [-Diterations=5]
+
+    The default URL is an in-memory H2 database in Oracle mode. Note that the SQL path relies on
+    Oracle's nested aggregate max(count(*)), which embedded engines reject, so it reports FAILED
+    there and SQL numbers need an Oracle URL; the IN_MEMORY path runs anywhere.
+*/
+public final class NameInfoBenchmark {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 2);
+        int iterations = Integer.getInteger("iterations", 5);
+
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            System.out.println(Measurement.header());
+            for (String size : System.getProperty("sizes", "1000000,10000000,50000000").split(",")) {
+                int users = Integer.parseInt(size.trim());
+                loadUsers(connection, users);
+                try (StudentFakebookOracle oracle = new StudentFakebookOracle(connection, new FakebookOracleConfig())) {
+                    for (QueryEngine engine : QueryEngine.values()) {
+                        measure(oracle, engine, users, warmup, iterations);
+                    }
+                }
+            }
+        }
+    }
+
+    // EFFECTS: runs findNameInfo(<engine>) and prints latency and allocation figures
+    private static void measure(StudentFakebookOracle oracle, QueryEngine engine, int users, int warmup, int iterations) throws Exception {
+        String label = String.format("findNameInfo/%s/users=%d", engine, users);
+        System.out.println(Measurement.run(label, warmup, iterations, () -> QueryFailure.checked(() -> oracle.findNameInfo(engine))));
+    }
+
+    // EFFECTS: re-creates the Fakebook schema and fills the Users table with <users> synthetic
+    //          rows whose first names follow a skewed distribution over a few thousand distinct names
+    private static void loadUsers(Connection connection, int users) throws SQLException {
+        EmbeddedFakebookDatabase.createSchema(connection);
+        Random random = new Random(484);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("insert into " + FakebookOracleConstants.UsersTable + " (user_id, first_name, last_name) values (?, ?, ?)")) {
+            for (int id = 1; id <= users; id++) {
+                int rank = (int) Math.floor(Math.pow(random.nextDouble(), 3) * DISTINCT_NAMES);
+                insert.setLong(1, id);
+                insert.setString(2, "N" + Integer.toString(rank, 36) + "abcdefghij".substring(rank % 10));
+                insert.setString(3, "L" + (id % 1000));
+                insert.addBatch();
+                if (id % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Member Variables
+    private static final int DISTINCT_NAMES = 5000;
+    private static final int BATCH_SIZE = 10000;
+}
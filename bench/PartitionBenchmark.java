@@ -0,0 +1,80 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.sql.DataSource;
+
+import project2.FakebookOracleConfig;
+import project2.PooledFakebookOracle;
+import project2.QueryCall;
+import project2.QueryEngine;
+import project2.QueryFailure;
+import project2.QueryId;
+
+/*
+    The PartitionBenchmark class measures how liveAwayFromHome (Query 3) and the SQL engine of
+    findPotentialSiblings (Query 9) scale when PooledFakebookOracle splits them into user_id
+    ranges scanned concurrently, one connection per range. Each query runs with 1, 2, 4, 8 and 16
+    partitions on one database loaded by FakebookDataGenerator, and every partitioned answer is
+    compared with the single-statement one.
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.PartitionBenchmark [jdbc-url [user [password]]]
+
+    Accepts the same system properties as QueryBenchmark, plus
+        partitions=1,2,4,8,16               the partition counts to measure
+
+    Every range borrows a new connection from a non-pooling DataSource, so against a remote
+    database the connect time dominates small ranges; point it at a pooled URL for such runs.
+*/
+public final class PartitionBenchmark {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 3);
+        int iterations = Integer.getInteger("iterations", 10);
+        String[] counts = System.getProperty("partitions", "1,2,4,8,16").split(",");
+
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            if (!"false".equals(System.getProperty("load"))) {
+                long start = System.nanoTime();
+                EmbeddedFakebookDatabase.createSchema(connection);
+                Map<String, Long> rows = FakebookDataGenerator.fromSystemProperties().generate(connection);
+                System.out.printf("loaded %s in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+            }
+            if (Boolean.getBoolean("indexes")) {
+                EmbeddedFakebookDatabase.createIndexes(connection);
+            }
+
+            DataSource dataSource = EmbeddedFakebookDatabase.dataSource(url, user, password);
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                System.out.println(Measurement.header());
+                for (QueryId query : new QueryId[] { QueryId.LIVE_AWAY_FROM_HOME, QueryId.POTENTIAL_SIBLINGS }) {
+                    QueryCall call = QueryCall.of(query, 0, 0, 0L);
+                    String expected = null;
+                    for (String count : counts) {
+                        int partitions = Integer.parseInt(count.trim());
+                        FakebookOracleConfig config = FakebookOracleConfig.fromSystemProperties()
+                            .setEngine(query, QueryEngine.SQL)
+                            .setPartitions(query, partitions);
+                        PooledFakebookOracle oracle = new PooledFakebookOracle(dataSource, executor, 1, config);
+                        String answer = String.valueOf(call.invoke(oracle));
+                        if (expected == null) {
+                            expected = answer;
+                        }
+                        else if (!expected.equals(answer)) {
+                            System.out.println("MISMATCH " + query.methodName() + " with " + partitions + " partitions");
+                        }
+                        System.out.println(Measurement.run(call + " x" + partitions, warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(oracle))));
+                    }
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import project2.FakebookOracle;
+import project2.FakebookOracleConfig;
+import project2.InstrumentedFakebookOracle;
+import project2.QueryCall;
+import project2.QueryFailure;
+import project2.QueryId;
+import project2.QueryMetrics;
+import project2.StudentFakebookOracle;
+
+/*
+    The QueryBenchmark class measures every StudentFakebookOracle query, from findMonthOfBirthInfo
+    (Query 0) through findPotentialSiblings (Query 9), against a locally launched database filled
+    by FakebookDataGenerator. For each query it reports throughput, latency percentiles and
+    allocation per call and per second (see Measurement).
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.QueryBenchmark [jdbc-url [user [password]]]
+
+    System properties:
+        queries=suggestFriends,matchMaker   the queries to run (default: all ten)
+        warmup=3, iterations=10             iterations per query
+        num=10, yearDiff=2, userID=1        query arguments
+        load=false                          benchmark an already populated database as is
+        indexes=true                        create the indexes IndexAdvisor recommends first
+        metrics=true                        also print the per-query execute / read / client split
+                                            (see QueryMetrics)
+        users, friendships, friendExponent, dataset shape (see FakebookDataGenerator)
+        photos, tags, tagExponent, cities,
+        events, batchSize, seed
+        fakebook.*                          engine selection and tuning (see FakebookOracleConfig)
+
+    A query that fails (see QueryFailure) is reported as FAILED instead of timed; an empty answer
+    is timed like any other. Without a URL an in-memory H2 database in Oracle mode is used.
+    Queries 1 and 7 rely on Oracle's nested aggregates, which embedded engines reject, so their SQL
+    engines report FAILED there.
+*/
+public final class QueryBenchmark {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 3);
+        int iterations = Integer.getInteger("iterations", 10);
+
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            if (!"false".equals(System.getProperty("load"))) {
+                long start = System.nanoTime();
+                EmbeddedFakebookDatabase.createSchema(connection);
+                Map<String, Long> rows = FakebookDataGenerator.fromSystemProperties().generate(connection);
+                System.out.printf("loaded %s in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+            }
+            if (Boolean.getBoolean("indexes")) {
+                EmbeddedFakebookDatabase.createIndexes(connection);
+            }
+
+            try (StudentFakebookOracle student = new StudentFakebookOracle(connection, FakebookOracleConfig.fromSystemProperties());
+                 QueryMetrics metrics = new QueryMetrics()) {
+                FakebookOracle oracle = Boolean.getBoolean("metrics") ? new InstrumentedFakebookOracle(student, metrics) : student;
+                System.out.println(Measurement.header());
+                for (QueryCall call : selectedCalls()) {
+                    System.out.println(Measurement.run(call.toString(), warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(oracle))));
+                }
+                if (Boolean.getBoolean("metrics")) {
+                    System.out.println(metrics.report());
+                }
+            }
+        }
+    }
+
+    // EFFECTS: returns the calls named by the "queries" system property, or all ten queries
+    static List<QueryCall> selectedCalls() {
+        int num = Integer.getInteger("num", 10);
+        int yearDiff = Integer.getInteger("yearDiff", 2);
+        long userID = Long.getLong("userID", 1L);
+        String selected = "," + System.getProperty("queries", "") + ",";
+        List<QueryCall> calls = new ArrayList<QueryCall>();
+        for (QueryId query : QueryId.values()) {
+            if (selected.equals(",,") || selected.contains("," + query.methodName() + ",")) {
+                calls.add(QueryCall.of(query, num, yearDiff, userID));
+            }
+        }
+        return calls;
+    }
+}
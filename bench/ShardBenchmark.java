@@ -0,0 +1,104 @@
+package project2.bench;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import project2.FakebookOracleConfig;
+import project2.FakebookOracleConstants;
+import project2.QueryCall;
+import project2.QueryFailure;
+import project2.ShardedFakebookOracle;
+import project2.StudentFakebookOracle;
+
+/*
+    The ShardBenchmark class runs ShardedFakebookOracle on several local databases. It loads one
+    database with FakebookDataGenerator, splits its users into equal-width user_id ranges, copies
+    each range into its own in-memory H2 database with EmbeddedFakebookDatabase.copyShard, and
+    then, for every selected query, compares the sharded answer with the answer of a
+    StudentFakebookOracle on the whole database and measures both.
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.ShardBenchmark [jdbc-url [user [password]]]
+
+    Accepts the same system properties as QueryBenchmark, plus
+        shards=4                            the number of shards
+
+    The sharded oracle evaluates matchMaker, suggestFriends and findPotentialSiblings with their
+    in-memory engines; select those engines for the whole database too (for example
+    -Dfakebook.engine.suggestFriends=in_memory) or their answers may be reported as mismatches
+    wherever the two engines of StudentFakebookOracle disagree.
+*/
+public final class ShardBenchmark {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 3);
+        int iterations = Integer.getInteger("iterations", 10);
+        int shardCount = Integer.getInteger("shards", 4);
+
+        List<Connection> shards = new ArrayList<Connection>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, shardCount - 1));
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            if (!"false".equals(System.getProperty("load"))) {
+                long start = System.nanoTime();
+                EmbeddedFakebookDatabase.createSchema(connection);
+                Map<String, Long> rows = FakebookDataGenerator.fromSystemProperties().generate(connection);
+                System.out.printf("loaded %s in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+            }
+
+            long start = System.nanoTime();
+            long[] bounds = userIdBounds(connection);
+            long width = (bounds[1] - bounds[0]) / shardCount + 1;
+            for (int i = 0; i < shardCount; i++) {
+                Connection shard = EmbeddedFakebookDatabase.open("fakebook_shard" + i);
+                shards.add(shard);
+                EmbeddedFakebookDatabase.createSchema(shard);
+                long from = bounds[0] + i * width;
+                long to = i == shardCount - 1 ? bounds[1] : from + width - 1;
+                System.out.printf("shard %d: users %d..%d %s%n", i, from, to, EmbeddedFakebookDatabase.copyShard(connection, shard, from, to));
+            }
+            System.out.printf("copied %d shards in %.1f s%n", shardCount, (System.nanoTime() - start) / 1e9);
+            if (Boolean.getBoolean("indexes")) {
+                EmbeddedFakebookDatabase.createIndexes(connection);
+                for (Connection shard : shards) {
+                    EmbeddedFakebookDatabase.createIndexes(shard);
+                }
+            }
+
+            FakebookOracleConfig config = FakebookOracleConfig.fromSystemProperties();
+            try (StudentFakebookOracle single = new StudentFakebookOracle(connection, config);
+                 ShardedFakebookOracle sharded = new ShardedFakebookOracle(shards, executor, config)) {
+                System.out.println(Measurement.header());
+                for (QueryCall call : QueryBenchmark.selectedCalls()) {
+                    if (!String.valueOf(call.invoke(single)).equals(String.valueOf(call.invoke(sharded)))) {
+                        System.out.println("MISMATCH " + call);
+                    }
+                    System.out.println(Measurement.run(call + " single", warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(single))));
+                    System.out.println(Measurement.run(call + " x" + shardCount + " shards", warmup, iterations, () -> QueryFailure.checked(() -> call.invoke(sharded))));
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            for (Connection shard : shards) {
+                shard.close();
+            }
+        }
+    }
+
+    // EFFECTS: returns { smallest, largest } user_id of the database behind <connection>
+    private static long[] userIdBounds(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rst = stmt.executeQuery("select min(user_id), max(user_id) from " + FakebookOracleConstants.UsersTable)) {
+            rst.next();
+            return new long[] { rst.getLong(1), rst.getLong(2) };
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package project2.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.Map;
+import java.util.Random;
+
+import project2.FakebookOracle.AgeInfo;
+import project2.FakebookOracle.UserInfo;
+import project2.FakebookOracleConfig;
+import project2.FakebookOracleConstants;
+import project2.FakebookSnapshot;
+import project2.StudentFakebookOracle;
+
+/*
+    The SnapshotBenchmark class compares a cold start over JDBC with one over a FakebookSnapshot.
+    It exports Users, Friends and Tags from one database loaded by FakebookDataGenerator, reports
+    the export time and file size and the time to map the file, and then measures oldest and
+    youngest friend lookups for random users both through the snapshot and through
+    StudentFakebookOracle.findAgeInfo.
+
+    Before measuring, every looked-up user's snapshot answer is compared with findAgeInfo; each
+    difference is printed as a MISMATCH line, followed by the number of users that differ. The
+    generated dataset leaves one part of the date of birth unknown (NULL) for a fraction of the
+    users, so the comparison covers how both order unknown parts.
+
+    USAGE:  java -cp <classes>:<jdbc driver> project2.bench.SnapshotBenchmark [jdbc-url [user [password]]]
+
+    Accepts the same system properties as QueryBenchmark, plus
+        snapshot=fakebook.snap              where to write the snapshot
+        lookups=1000                        random users looked up per measured iteration
+        unknownBirthParts=0.1               the fraction of users with a NULL year, month or day
+                                            of birth (see FakebookDataGenerator)
+*/
+public final class SnapshotBenchmark {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : null;
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int warmup = Integer.getInteger("warmup", 3);
+        int iterations = Integer.getInteger("iterations", 10);
+        int lookups = Integer.getInteger("lookups", 1000);
+        Path file = Paths.get(System.getProperty("snapshot", "fakebook.snap"));
+
+        try (Connection connection = EmbeddedFakebookDatabase.open(url, user, password)) {
+            if (!"false".equals(System.getProperty("load"))) {
+                long start = System.nanoTime();
+                EmbeddedFakebookDatabase.createSchema(connection);
+                FakebookDataGenerator generator = FakebookDataGenerator.fromSystemProperties()
+                    .setUnknownBirthParts(Double.parseDouble(System.getProperty("unknownBirthParts", "0.1")));
+                Map<String, Long> rows = generator.generate(connection);
+                System.out.printf("loaded %s in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+            }
+            if (Boolean.getBoolean("indexes")) {
+                EmbeddedFakebookDatabase.createIndexes(connection);
+            }
+
+            long start = System.nanoTime();
+            FakebookSnapshot.write(connection, FakebookOracleConstants.UsersTable, FakebookOracleConstants.FriendsTable, FakebookOracleConstants.TagsTable, file);
+            System.out.printf("exported %,d bytes in %.1f ms%n", Files.size(file), (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            try (FakebookSnapshot snapshot = FakebookSnapshot.open(file);
+                 StudentFakebookOracle oracle = new StudentFakebookOracle(connection, FakebookOracleConfig.fromSystemProperties())) {
+                System.out.printf("mapped %,d users and %,d tags in %.2f ms%n", snapshot.userCount(), snapshot.tagCount(), (System.nanoTime() - start) / 1e6);
+                if (snapshot.userCount() == 0) {
+                    return;
+                }
+
+                long[] userIds = new long[lookups];
+                Random random = new Random(Long.getLong("seed", 42L));
+                for (int i = 0; i < lookups; i++) {
+                    userIds[i] = snapshot.userId(random.nextInt(snapshot.userCount()));
+                }
+                int mismatches = 0;
+                for (long userId : userIds) {
+                    String expected = String.valueOf(oracle.findAgeInfo(userId));
+                    String got = String.valueOf(ageInfo(snapshot, userId));
+                    if (!got.equals(expected)) {
+                        mismatches++;
+                        System.out.println("MISMATCH findAgeInfo(" + userId + "): jdbc " + expected + ", snapshot " + got);
+                    }
+                }
+                System.out.printf("verified %,d lookups: %s%n", lookups, mismatches == 0 ? "all match" : mismatches + " MISMATCH");
+                System.out.println(Measurement.header());
+                System.out.println(Measurement.run("snapshot ageInfo x" + lookups, warmup, iterations, () -> {
+                    for (long userId : userIds) {
+                        snapshot.oldestFriend(userId);
+                        snapshot.youngestFriend(userId);
+                    }
+                }));
+                System.out.println(Measurement.run("jdbc findAgeInfo x" + lookups, warmup, iterations, () -> {
+                    for (long userId : userIds) {
+                        oracle.findAgeInfo(userId);
+                    }
+                }));
+            }
+        }
+    }
+
+    // EFFECTS: returns the answer of findAgeInfo(<userId>) as read from <snapshot>, with the
+    //          ERROR users findAgeInfo answers with for a user without friends
+    private static AgeInfo ageInfo(FakebookSnapshot snapshot, long userId) {
+        return new AgeInfo(userInfo(snapshot, snapshot.oldestFriend(userId)), userInfo(snapshot, snapshot.youngestFriend(userId)));
+    }
+
+    private static UserInfo userInfo(FakebookSnapshot snapshot, int index) {
+        if (index < 0) {
+            return new UserInfo(-1, "ERROR", "ERROR");
+        }
+        return new UserInfo(snapshot.userId(index), snapshot.firstName(index), snapshot.lastName(index));
+    }
+}